@@ -0,0 +1,42 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Analysis of a request into its Query tree, without any access to the Database.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyzerBenchmark {
+    @Param({
+        "DE Hitchcock",
+        "DE Truffaut, AVANT 1970",
+        "AVEC Alain Delon OU AVEC Belmondo",
+        "TITRE ombre OU TITRE nuit OU TITRE amour, APRES 1990",
+        "PAYS us, APRES 2010 OU EN 1980"
+    })
+    public String request;
+
+    @Benchmark
+    public Object analyze() throws Throwable {
+        Object analyzer = (Object) Bdfilm.NEW_ANALYZER.invokeExact(this.request);
+        return (Object) Bdfilm.GET_QUERY.invokeExact(analyzer);
+    }
+}
@@ -0,0 +1,177 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Access from the benchmarks to the classes of RechercheFilm.
+ * JMH does not accept benchmarks in the default package and the default package cannot be imported,
+ * so the classes are reached through method handles, typed with Object and created once:
+ * once inlined by the JIT they cost as much as a direct call.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+final class Bdfilm {
+    /**
+     * The Database of the benchmarks, relative to the directory the benchmarks are run from
+     */
+    static final String DATABASE = System.getProperty("bdfilm", "SQLiteSample/bdfilm.sqlite");
+
+    /**
+     * Representative query mix: selective director and actor queries, broad AVANT/APRES ranges,
+     * multi-OR titles and countries
+     */
+    static final String[] QUERY_MIX = {
+        "DE Hitchcock",
+        "DE Truffaut, AVANT 1970",
+        "AVEC Catherine Deneuve",
+        "AVEC Alain Delon OU AVEC Belmondo",
+        "AVANT 2000",
+        "APRES 1990, AVANT 2010",
+        "EN 1958",
+        "TITRE vie, EN 2006",
+        "TITRE ombre OU TITRE nuit OU TITRE amour, APRES 1990",
+        "TITRE les enfants",
+        "PAYS france, AVANT 1950",
+        "PAYS us, APRES 2010 OU EN 1980"
+    };
+
+    static final Class<?> RECHERCHE_FILM = type("RechercheFilm");
+    static final Class<?> ANALYZER = type("Analyzer");
+    static final Class<?> QUERY = type("Query");
+    static final Class<?> REQUEST = type("Request");
+    static final Class<?> POSTING_LIST = type("PostingList");
+    static final Class<?> STATEMENT_CACHE = type("StatementCache");
+    static final Class<?> EXPLAIN = type("Explain");
+    static final Class<?> CONNECTION_POOL = type("ConnectionPool");
+    static final Class<?> POOLED_CONNECTION = type("ConnectionPool$PooledConnection");
+    static final Class<?> EXECUTION_MODE = type("ExecutionMode");
+    static final Class<?> FILM_CACHE_POLICY = type("FilmCache$Policy");
+
+    /** (String)RechercheFilm */
+    static final MethodHandle NEW_RECHERCHE_FILM = constructor(RECHERCHE_FILM, String.class);
+    /** (RechercheFilm, String)String */
+    static final MethodHandle RETROUVE = method(RECHERCHE_FILM, "retrouve", String.class);
+    /** (RechercheFilm)void */
+    static final MethodHandle FERME_BASE = method(RECHERCHE_FILM, "fermeBase");
+    /** (RechercheFilm, ExecutionMode)void */
+    static final MethodHandle SET_EXECUTION_MODE = method(RECHERCHE_FILM, "setExecutionMode", EXECUTION_MODE);
+    /** (RechercheFilm, int, long)void */
+    static final MethodHandle SET_QUERY_CACHE = method(RECHERCHE_FILM, "setQueryCache", int.class, long.class);
+    /** (RechercheFilm, FilmCache.Policy, long)void */
+    static final MethodHandle SET_FILM_CACHE = method(RECHERCHE_FILM, "setFilmCache", FILM_CACHE_POLICY, long.class);
+    /** (RechercheFilm)ConnectionPool */
+    static final MethodHandle GET_CONNECTION_POOL = method(RECHERCHE_FILM, "getConnectionPool");
+    /** (RechercheFilm, StatementCache, Request)PostingList */
+    static final MethodHandle EVALUATE = method(RECHERCHE_FILM, "evaluate", STATEMENT_CACHE, REQUEST);
+    /** (RechercheFilm, StatementCache, int[], Explain)LinkedList&lt;InfoFilm&gt;, the Explain being null */
+    static final MethodHandle GET_INFO_FILMS = method(RECHERCHE_FILM, "getInfoFilms", STATEMENT_CACHE, int[].class, EXPLAIN);
+
+    /** (String)Analyzer */
+    static final MethodHandle NEW_ANALYZER = constructor(ANALYZER, String.class);
+    /** (Analyzer)Query */
+    static final MethodHandle GET_QUERY = method(ANALYZER, "getQuery");
+    /** (Query)List */
+    static final MethodHandle GET_GROUPS = method(QUERY, "getGroups");
+
+    /** (List)PostingList */
+    static final MethodHandle UNION_ALL = method(POSTING_LIST, "unionAll", List.class);
+    /** (List)PostingList */
+    static final MethodHandle INTERSECT_ALL = method(POSTING_LIST, "intersectAll", List.class);
+    /** (PostingList)int */
+    static final MethodHandle SIZE = method(POSTING_LIST, "size");
+    /** (PostingList, int)int */
+    static final MethodHandle GET = method(POSTING_LIST, "get", int.class);
+
+    /** (ConnectionPool)PooledConnection */
+    static final MethodHandle ACQUIRE = method(CONNECTION_POOL, "acquire");
+    /** (ConnectionPool, PooledConnection)void */
+    static final MethodHandle RELEASE = method(CONNECTION_POOL, "release", POOLED_CONNECTION);
+    /** (PooledConnection)StatementCache */
+    static final MethodHandle GET_STATEMENTS = method(POOLED_CONNECTION, "getStatements");
+
+    private Bdfilm() {
+    }
+
+    /**
+     * Open the Database of the benchmarks
+     * @param mode The name of the ExecutionMode
+     * @param caches false to disable the query and film caches
+     * @return The RechercheFilm
+     * @throws Throwable If the Database cannot be opened
+     */
+    static Object open(final String mode, final boolean caches) throws Throwable {
+        Object rechercheFilm = (Object) NEW_RECHERCHE_FILM.invokeExact(DATABASE);
+        SET_EXECUTION_MODE.invokeExact(rechercheFilm, enumConstant(EXECUTION_MODE, mode));
+        if (!caches) {
+            SET_QUERY_CACHE.invokeExact(rechercheFilm, 0, 0L);
+            SET_FILM_CACHE.invokeExact(rechercheFilm, enumConstant(FILM_CACHE_POLICY, "LRU"), 0L);
+        }
+        return rechercheFilm;
+    }
+
+    /**
+     * Analyze a request
+     * @param request The request
+     * @return The "or" groups of the Query, as a List of List of Request
+     * @throws Throwable If the Analyzer fails
+     */
+    static List<?> groups(final String request) throws Throwable {
+        Object analyzer = (Object) NEW_ANALYZER.invokeExact(request);
+        Object query = (Object) GET_QUERY.invokeExact(analyzer);
+        return (List<?>) (Object) GET_GROUPS.invokeExact(query);
+    }
+
+    private static Class<?> type(final String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object enumConstant(final Class<?> type, final String name) {
+        for (Object constant : type.getEnumConstants())
+            if (((Enum<?>) constant).name().equals(name)) return constant;
+        throw new IllegalArgumentException(name);
+    }
+
+    /**
+     * Handle of a method, private or not, whose parameters of the classes of RechercheFilm
+     * and whose result are erased to Object
+     */
+    private static MethodHandle method(final Class<?> owner, final String name, final Class<?>... parameters) {
+        try {
+            Method method = owner.getDeclaredMethod(name, parameters);
+            method.setAccessible(true);
+            return erase(MethodHandles.lookup().unreflect(method));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle constructor(final Class<?> owner, final Class<?>... parameters) {
+        try {
+            Constructor<?> constructor = owner.getDeclaredConstructor(parameters);
+            constructor.setAccessible(true);
+            return erase(MethodHandles.lookup().unreflectConstructor(constructor));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle erase(final MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); ++i)
+            if (type.parameterType(i).getPackageName().isEmpty())
+                type = type.changeParameterType(i, Object.class);
+        if (!type.returnType().isPrimitive())
+            type = type.changeReturnType(Object.class);
+        return handle.asType(type);
+    }
+}
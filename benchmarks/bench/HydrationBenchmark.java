@@ -0,0 +1,67 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hydration of a page of films into InfoFilm, from SQLite or from the FilmCache.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HydrationBenchmark {
+    @Param({"10", "100"})
+    public int films;
+
+    @Param({"false", "true"})
+    public boolean filmCache;
+
+    private Object rechercheFilm;
+    private Object pool;
+    private Object connection;
+    private Object statements;
+    private int[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        this.rechercheFilm = Bdfilm.open("POSTING_LISTS", this.filmCache);
+        this.pool = (Object) Bdfilm.GET_CONNECTION_POOL.invokeExact(this.rechercheFilm);
+        this.connection = (Object) Bdfilm.ACQUIRE.invokeExact(this.pool);
+        this.statements = (Object) Bdfilm.GET_STATEMENTS.invokeExact(this.connection);
+
+        Object predicate = ((java.util.List<?>) Bdfilm.groups("AVANT 2000").get(0)).get(0);
+        Object postingList = (Object) Bdfilm.EVALUATE.invokeExact(this.rechercheFilm, this.statements, predicate);
+        this.ids = new int[this.films];
+        for (int i = 0; i < this.films; ++i)
+            this.ids[i] = (int) Bdfilm.GET.invokeExact(postingList, i * 7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        Bdfilm.RELEASE.invokeExact(this.pool, this.connection);
+        Bdfilm.FERME_BASE.invokeExact(this.rechercheFilm);
+    }
+
+    @Benchmark
+    public Object hydrate() throws Throwable {
+        return (Object) Bdfilm.GET_INFO_FILMS.invokeExact(this.rechercheFilm, this.statements, this.ids, (Object) null);
+    }
+}
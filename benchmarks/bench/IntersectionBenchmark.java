@@ -0,0 +1,69 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Combination of the PostingLists of a request: union of each "or" group, then intersection of the groups.
+ * The predicates are evaluated once during the setup, only the set operations are measured.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntersectionBenchmark {
+    @Param({
+        "DE Hitchcock, AVANT 2000",
+        "APRES 1950, AVANT 2000",
+        "TITRE ombre OU TITRE nuit OU TITRE amour, APRES 1990",
+        "PAYS france OU PAYS italie, AVANT 1980 OU APRES 2000"
+    })
+    public String request;
+
+    private List<List<Object>> postingLists;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        Object rechercheFilm = Bdfilm.open("POSTING_LISTS", false);
+        Object pool = (Object) Bdfilm.GET_CONNECTION_POOL.invokeExact(rechercheFilm);
+        Object connection = (Object) Bdfilm.ACQUIRE.invokeExact(pool);
+        Object statements = (Object) Bdfilm.GET_STATEMENTS.invokeExact(connection);
+
+        this.postingLists = new ArrayList<>();
+        for (Object group : Bdfilm.groups(this.request)) {
+            List<Object> lists = new ArrayList<>();
+            for (Object predicate : (List<?>) group)
+                lists.add((Object) Bdfilm.EVALUATE.invokeExact(rechercheFilm, statements, predicate));
+            this.postingLists.add(lists);
+        }
+
+        Bdfilm.RELEASE.invokeExact(pool, connection);
+        Bdfilm.FERME_BASE.invokeExact(rechercheFilm);
+    }
+
+    @Benchmark
+    public Object combine() throws Throwable {
+        List<Object> groups = new ArrayList<>(this.postingLists.size());
+        for (List<Object> lists : this.postingLists)
+            groups.add((Object) Bdfilm.UNION_ALL.invokeExact((List) lists));
+        return (Object) Bdfilm.INTERSECT_ALL.invokeExact((List) groups);
+    }
+}
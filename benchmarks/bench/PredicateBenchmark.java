@@ -0,0 +1,71 @@
+package bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluation of a single predicate into its PostingList, on a pooled connection:
+ * one benchmark per keyword, with selective and broad values.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicateBenchmark {
+    @Param({
+        "TITRE vertigo",
+        "TITRE les enfants",
+        "DE Hitchcock",
+        "AVEC Catherine Deneuve",
+        "PAYS france",
+        "PAYS us",
+        "EN 1958",
+        "AVANT 1950",
+        "APRES 1990"
+    })
+    public String request;
+
+    private Object rechercheFilm;
+    private Object pool;
+    private Object connection;
+    private Object statements;
+    private Object predicate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        this.rechercheFilm = Bdfilm.open("POSTING_LISTS", false);
+        this.pool = (Object) Bdfilm.GET_CONNECTION_POOL.invokeExact(this.rechercheFilm);
+        this.connection = (Object) Bdfilm.ACQUIRE.invokeExact(this.pool);
+        this.statements = (Object) Bdfilm.GET_STATEMENTS.invokeExact(this.connection);
+        this.predicate = ((List<?>) Bdfilm.groups(this.request).get(0)).get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        Bdfilm.RELEASE.invokeExact(this.pool, this.connection);
+        Bdfilm.FERME_BASE.invokeExact(this.rechercheFilm);
+    }
+
+    @Benchmark
+    public Object evaluate() throws Throwable {
+        return (Object) Bdfilm.EVALUATE.invokeExact(this.rechercheFilm, this.statements, this.predicate);
+    }
+}
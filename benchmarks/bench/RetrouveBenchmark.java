@@ -0,0 +1,56 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end retrouve() over the query mix of Bdfilm, each invocation running the next query of the mix.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RetrouveBenchmark {
+    @Param({"POSTING_LISTS", "COMPILED_SQL", "IN_MEMORY"})
+    public String mode;
+
+    @Param({"false", "true"})
+    public boolean caches;
+
+    private Object rechercheFilm;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        this.rechercheFilm = Bdfilm.open(this.mode, this.caches);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        Bdfilm.FERME_BASE.invokeExact(this.rechercheFilm);
+    }
+
+    @Benchmark
+    public Object retrouve() throws Throwable {
+        String request = Bdfilm.QUERY_MIX[this.next];
+        this.next = (this.next + 1) % Bdfilm.QUERY_MIX.length;
+        return (Object) Bdfilm.RETROUVE.invokeExact(this.rechercheFilm, request);
+    }
+}
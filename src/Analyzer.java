@@ -1,256 +1,271 @@
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Class that will analyze a given String and create Requests from it.
- * Will order those Requests in a certain manner inside a LinkedList<LinkedList<String>>.
+ * Class that will analyze a given String and create the Query tree of its Requests.
+ * The String is read in a single pass: the tokens are delimited by spaces and compared in place
+ * to the KeyWords, ignoring the case and the punctuation {",",";",".",":"},
+ * and the values are gathered without their punctuation in a single StringBuilder.
  * {[Request1][Request2][Request3]}
  * {[Request4]}
  * {[Request5]}
- * This is a representation of how the Requests are classified inside the list.
+ * This is a representation of how the Requests are classified inside the Query.
  * Request 1, 2 and 3 are bound by an "or" relation.
  * Request 4 and 5 are independent (Request 4 and 5 are bound by an "and" relation,
  * the group containing request 1, 2 and 3 is also bound by an "and" relation with request 4 and request 5).
- * The class also handles the eventual errors from the given String analysis.
+ * A value ends with the first word containing a punctuation, the following words start a new request
+ * of the same KeyWord.
+ * When a CountryDictionary is given, the values of PAYS are resolved to the codes of the countries.
+ * The class also handles the eventual errors from the given String analysis:
+ * the analysis stops on the first invalid request, the Query keeps the requests found before it.
  *
  * @author  Dray Raphael
  * @version 1.0
+ * @see Query
+ * @see Request
  */
 public class Analyzer {
-    private LinkedList<LinkedList<String>> requestedList;
-    private String s;
+    /**
+     * The words of the KeyWords, in lower case, and the word "ou"
+     */
+    private static final KeyWord[] KEYWORDS = KeyWord.values();
+    private static final String[] KEYWORD_WORDS = new String[KEYWORDS.length];
+    private static final String OU = "ou";
+
+    static {
+        for (int k = 0; k < KEYWORDS.length; ++k) KEYWORD_WORDS[k] = KEYWORDS[k].getName().toLowerCase();
+    }
+
+    private final String s;
+    private final List<List<Request>> groups = new ArrayList<>();
+    private final StringBuilder value = new StringBuilder();
+    private final Query query;
+    private final CountryDictionary countries;
+
+    // The request being read
+    private KeyWord keyWord;
+    private boolean isOrRequest;
 
 
     /**
-     * Simple constructor that will initialize the requestedList.
+     * Simple constructor that will analyze the String given in parameter.
      *
      * @author  Dray Raphael
      * @param s the String to analyze
-     * @see LinkedList
+     * @see Query
      */
     public Analyzer(String s) {
-        this.requestedList = new LinkedList<>();
+        this(s, null);
+    }
+
+    /**
+     * Constructor that will analyze the String given in parameter,
+     * resolving the values of PAYS to the codes of the countries.
+     *
+     * @author  Dray Raphael
+     * @param s the String to analyze
+     * @param countries the dictionary of the countries, null to leave the values of PAYS unresolved
+     * @see CountryDictionary
+     */
+    public Analyzer(String s, CountryDictionary countries) {
         this.s = s;
-        this.analyzeInput(this.s);
+        this.countries = countries;
+        String error = null;
+        try {
+            analyze(s);
+        } catch (InvalidRequestException e) {
+            error = e.getMessage();
+        }
+        this.query = new Query(this.groups, error);
     }
 
     public String getS() {
         return s;
     }
 
+    /**
+     * Simple get function that will return the Query tree of the analyzed String.
+     *
+     * @author  Dray Raphael
+     * @return return the Query, holding the requests found before the error if any.
+     */
+    public Query getQuery() {
+        return this.query;
+    }
+
     /**
      * Function that will analyze and create requests from the String given in parameter.
      *
      * @author  Dray Raphael
      * @param s String written by the user that will be analyzed.
-     * @throws InvalidRequestException if request seems to be null
+     * @throws InvalidRequestException if the String is empty or a request is invalid
      */
     private void analyze(String s) throws InvalidRequestException {
-
-        if (s.isEmpty()){
+        if (s.isEmpty()) {
             throw new InvalidRequestException("string is empty!");
         }
 
         KeyWord lastKeyWord = null;
         boolean isOrRequest = false;
-        Request requestTemp = null;
-
-        String tempString;
-        LinkedList<Integer> indexList;
-        requestedList = new LinkedList<>();
-
-        String[] splittedString = s.split(" ");
-        String[] splittedStringLowerCase = s.toLowerCase().split(" ");
-
-        int i = 0;
-        while (i < splittedStringLowerCase.length) {
-
-            tempString = splittedStringLowerCase[i];
-            indexList = containsPunct(tempString);
-            if (indexList.getLast() != -1)
-                for (Integer integer : indexList)
-                    tempString = charRemoveAt(tempString, integer);
-
-            assert tempString != null;
-            switch (tempString) {
-                case "titre":
-                    lastKeyWord = KeyWord.TITRE;
-                    addRequest(requestTemp);
-                    requestTemp = new Request(lastKeyWord);
-                    requestTemp.setIsOrRequest(isOrRequest);
-                    isOrRequest = false;
-                    break;
+        boolean endOfValue = false;
 
-                case "de":
-                    lastKeyWord = KeyWord.REALISATEUR;
-                    addRequest(requestTemp);
-                    requestTemp = new Request(lastKeyWord);
-                    requestTemp.setIsOrRequest(isOrRequest);
-                    isOrRequest = false;
-                    break;
+        int n = s.length();
+        for (int start = 0; start <= n; ) {
+            int end = s.indexOf(' ', start);
+            if (end < 0) end = n;
 
-                case "avec":
-                    lastKeyWord = KeyWord.ACTEUR;
-                    addRequest(requestTemp);
-                    requestTemp = new Request(lastKeyWord);
-                    requestTemp.setIsOrRequest(isOrRequest);
-                    isOrRequest = false;
-                    break;
-
-                case "pays":
-                    lastKeyWord = KeyWord.PAYS;
-                    addRequest(requestTemp);
-                    requestTemp = new Request(lastKeyWord);
-                    requestTemp.setIsOrRequest(isOrRequest);
-                    isOrRequest = false;
-                    break;
-
-                case "en":
-                    lastKeyWord = KeyWord.DATE;
-                    addRequest(requestTemp);
-                    requestTemp = new Request(lastKeyWord);
-                    requestTemp.setIsOrRequest(isOrRequest);
-                    isOrRequest = false;
-                    break;
-
-                case "avant":
-                    lastKeyWord = KeyWord.AVANT;
-                    addRequest(requestTemp);
-                    requestTemp = new Request(lastKeyWord);
-                    requestTemp.setIsOrRequest(isOrRequest);
-                    isOrRequest = false;
-                    break;
-
-                case "apres":
-                    lastKeyWord = KeyWord.APRES;
-                    addRequest(requestTemp);
-                    requestTemp = new Request(lastKeyWord);
-                    requestTemp.setIsOrRequest(isOrRequest);
-                    isOrRequest = false;
-                    break;
-
-                case "ou":
+            if (end > start) {
+                if (isWord(s, start, end, OU)) {
                     isOrRequest = true;
-                    addRequest(requestTemp);
-                    requestTemp = null;
-                    break;
-
-                default:
-                    if (null == requestTemp)
-                        if (null == lastKeyWord) throw new InvalidRequestException("No KeyWord for request");
-                        else {
-                            requestTemp = new Request(lastKeyWord);
-                            requestTemp.addVal(splittedString[i]);
-                            requestTemp.setIsOrRequest(isOrRequest);
+                    finishRequest();
+                } else {
+                    KeyWord k = keyWordAt(s, start, end);
+                    if (k != null) {
+                        finishRequest();
+                        lastKeyWord = k;
+                        newRequest(k, isOrRequest);
+                        isOrRequest = false;
+                        endOfValue = false;
+                    } else {
+                        if (this.keyWord == null || endOfValue) {
+                            if (lastKeyWord == null) throw new InvalidRequestException("No KeyWord for request");
+                            finishRequest();
+                            newRequest(lastKeyWord, isOrRequest);
                             isOrRequest = false;
                         }
-                    else if (requestTemp.containsPunct()) {
-                        addRequest(requestTemp);
-                        requestTemp = new Request(lastKeyWord);
-                        requestTemp.addVal(splittedString[i]);
-                        requestTemp.setIsOrRequest(isOrRequest);
-                        isOrRequest = false;
-                    } else requestTemp.addVal(splittedString[i]);
-                    break;
+                        endOfValue = addWord(s, start, end);
+                    }
+                }
             }
-            i++;
+            start = end + 1;
         }
-        addRequest(requestTemp);
+        finishRequest();
     }
 
     /**
-     * Function that will add the given Request to the requestedList
-     * Will check if the Request isn't null.
-     * Then, whether or not the Request is an "or" request,
-     * will add that Request at the correct place in the requestedList.
-     *
-     * @author  Dray Raphael
-     * @param request Request that must be added to the requestedList
-     * @throws InvalidRequestException if request seems to be null
+     * Start a new request, the previous one being finished
+     * @param keyWord The KeyWord of the request
+     * @param isOrRequest true if the request is bound to the previous group by an "or" relation
      */
-    private void addRequest(Request request) throws InvalidRequestException {
-        if (request == null) return;
-        if (!request.getIsOrRequest()) {
-            this.requestedList.addLast(new LinkedList<>());
-            this.requestedList.getLast().addLast(request.finishRequest());
-        } else this.requestedList.getLast().addLast(request.finishRequest());
+    private void newRequest(KeyWord keyWord, boolean isOrRequest) {
+        this.keyWord = keyWord;
+        this.isOrRequest = isOrRequest;
+        this.value.setLength(0);
     }
 
     /**
-     * Simple get function that will return the requestedList.
-     * LinkedList<String> contains individual requests that are bound together with an "or" relation.
-     * While LinkedList<LinkedList<String>> contains those groups of requests.
-     *
-     * @author  Dray Raphael
-     * @return return a LinkedList<LinkedList<String>> containing all the individual requests.
+     * Append a word of the String to the value of the request, without its punctuation.
+     * @param s The analyzed String
+     * @param start The index of the first character of the word
+     * @param end The index following the last character of the word
+     * @return true if the word contains a punctuation, which ends the value
      */
-    public LinkedList<LinkedList<String>> getRequestedList(){
-        return this.requestedList;
+    private boolean addWord(String s, int start, int end) {
+        boolean punct = false, started = false;
+        for (int i = start; i < end; ++i) {
+            char c = s.charAt(i);
+            if (isPunct(c)) {
+                punct = true;
+                continue;
+            }
+            if (!started && this.value.length() > 0) this.value.append(' ');
+            started = true;
+            this.value.append(c);
+        }
+        return punct;
     }
 
     /**
-     * Function that will check wether or not val contains punctuation {",",";",".",":"}.
-     * Then will return a list of Integer pointing to the indexes of punctuation characters if any.
+     * Function that will finalize the current request, if any, and add it to the Query.
+     * Will check if the request is valid, ie: the value isn't empty and is coherent with the KeyWord.
+     * Then, whether or not the Request is an "or" request,
+     * will add that Request at the correct place in the groups.
      *
      * @author  Dray Raphael
-     * @param val String to remove the punctuation
-     * @return return a LinkedList<Integer> containing the indexes of punctuation characters, -1 if there are none.
+     * @throws InvalidRequestException if the request is invalid
      */
-    public LinkedList<Integer> containsPunct(String val){
+    private void finishRequest() throws InvalidRequestException {
+        if (this.keyWord == null) return;
+        KeyWord k = this.keyWord;
+        this.keyWord = null;
 
-        String[] punct = {",", ";", ".", ":"};
-        LinkedList<Integer> list = new LinkedList<>();
-        boolean containsPunct = false;
+        if (this.value.length() == 0)
+            throw new InvalidRequestException(String.format("Request %s is empty", k));
 
-        if (val != null)
-            for (String value : punct)
-                if (val.contains(value)) {
-                    containsPunct = true;
-                    break;
-                }
-
-        if (!containsPunct) list.addLast(-1);
-        else {
-            int i = 0;
-            while (i < val.length()) {
-                for (String value : punct)
-                    if (val.charAt(i) == value.charAt(0))
-                        list.addLast(i);
-                i++;
+        Request request;
+        if (Request.isYear(k)) {
+            long year = 0;
+            for (int i = 0; i < this.value.length(); ++i) {
+                char c = this.value.charAt(i);
+                if (c < '0' || c > '9')
+                    throw new InvalidRequestException(String.format("Request %s does not contain only numbers", k));
+                year = year * 10 + (c - '0');
+                if (year > Integer.MAX_VALUE)
+                    throw new InvalidRequestException(String.format("Request %s is not a valid year", k));
+            }
+            request = new Request(k, this.value.toString(), (int) year);
+        } else {
+            for (int i = 0; i < this.value.length(); ++i) {
+                char c = this.value.charAt(i);
+                if (!Character.isLetter(c) && c != ' ')
+                    throw new InvalidRequestException(String.format("Request %s does not contain only letters", k));
             }
+            String value = this.value.toString();
+            String[] codes = k == KeyWord.PAYS && this.countries != null ? this.countries.resolve(value) : null;
+            request = new Request(k, value, codes);
         }
 
-        return list;
+        if (!this.isOrRequest) this.groups.add(new ArrayList<>(1));
+        else if (this.groups.isEmpty())
+            throw new InvalidRequestException(String.format("Request %s cannot follow OU without a previous request", k));
+        this.groups.get(this.groups.size() - 1).add(request);
     }
 
     /**
-     * Function that will remove from the given String a character at the given index.
+     * Function that will return the KeyWord written by a word of the String, if any.
      *
      * @author  Dray Raphael
-     * @param p index of the character we want removed.
-     * @param str String in which we want to remove a character.
-     * @return return the String given as parameter but with the character at the given index removed.
+     * @param s The analyzed String
+     * @param start The index of the first character of the word
+     * @param end The index following the last character of the word
+     * @return return the KeyWord, null if the word is not a KeyWord.
      */
-    private static String charRemoveAt(String str, int p) {
-        if ((null != str) && (p >= 0) && (p < str.length()))
-            return String.format("%s%s", str.substring(0, p), str.substring(p + 1));
+    private static KeyWord keyWordAt(String s, int start, int end) {
+        for (int k = 0; k < KEYWORDS.length; ++k)
+            if (isWord(s, start, end, KEYWORD_WORDS[k])) return KEYWORDS[k];
         return null;
     }
 
     /**
-     * Function that will call analyze() and forward the results if no error happened.
-     * Will forward the errors encountered instead of the result.
+     * Function that will compare a word of the String to a word in lower case,
+     * ignoring the case and the punctuation of the String.
      *
      * @author  Dray Raphael
-     * @param inputString String that will be used as parameter in the analyze() call.
+     * @param s The analyzed String
+     * @param start The index of the first character of the word
+     * @param end The index following the last character of the word
+     * @param word The word in lower case
+     * @return return true if they are equal.
      */
-    public void analyzeInput(String inputString) {
-        LinkedList<LinkedList<String>> temp;
-        try{
-            analyze(inputString);
-        }catch (InvalidRequestException e){
-            temp = new LinkedList<>();
-            temp.addLast(new LinkedList<>());
-            temp.getLast().addLast("ERROR;"+e.getMessage());
+    private static boolean isWord(String s, int start, int end, String word) {
+        int j = 0;
+        for (int i = start; i < end; ++i) {
+            char c = s.charAt(i);
+            if (isPunct(c)) continue;
+            if (j == word.length() || Character.toLowerCase(c) != word.charAt(j)) return false;
+            j++;
         }
+        return j == word.length();
+    }
+
+    /**
+     * Function that will check wether or not c is a punctuation {",",";",".",":"}.
+     *
+     * @author  Dray Raphael
+     * @param c The character to test
+     * @return return true if c is a punctuation.
+     */
+    private static boolean isPunct(char c) {
+        return c == ',' || c == ';' || c == '.' || c == ':';
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,431 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+/**
+ * In-memory columnar copy of the catalogue (films, personnes, generique, pays, autres_titres),
+ * able to answer every keyword and to hydrate the films without touching SQLite.
+ * <p>
+ * The films are stored by row, in the order of their id_film, in int columns.
+ * The Strings are stored once, as UTF-8, in a table referenced by their code, and the relations are stored
+ * as CSR adjacency lists: the values of row r of a relation are values[start[r]] to values[start[r + 1] - 1].
+ * All the columns are views over the sections of a CatalogueFile image, read in place,
+ * so a Catalogue opened from a mapped file needs no deserialization.
+ * The catalogue is immutable, so it can be shared between threads.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see CatalogueFile
+ */
+public class Catalogue {
+    // Films
+    private final IntBuffer filmIds;
+    private final IntBuffer rowOfId;
+    private final IntBuffer annee;
+    private final IntBuffer duree;
+    private final IntBuffer pays;
+    private final IntBuffer titre;
+    private final IntBuffer titreRecherche;
+    private final IntBuffer autresTitresStart;
+    private final IntBuffer autresTitres;
+    private final IntBuffer autresTitresRecherche;
+    private final IntBuffer realisateursStart;
+    private final IntBuffer realisateurs;
+    private final IntBuffer acteursStart;
+    private final IntBuffer acteurs;
+
+    // Personnes, and their names without accents
+    private final IntBuffer noms;
+    private final IntBuffer prenoms;
+    private final IntBuffer nomsSansAccent;
+    private final IntBuffer prenomsSansAccent;
+    private final IntBuffer filmsRealisateurStart;
+    private final IntBuffer filmsRealisateur;
+    private final IntBuffer filmsActeurStart;
+    private final IntBuffer filmsActeur;
+
+    // Pays
+    private final IntBuffer codesPays;
+    private final IntBuffer nomsPays;
+    private final IntBuffer filmsPaysStart;
+    private final IntBuffer filmsPays;
+
+    // Films par annee, from anneeMin
+    private final int anneeMin;
+    private final IntBuffer filmsAnneeStart;
+    private final IntBuffer filmsAnnee;
+
+    private final Strings strings;
+    private volatile FilmOrder order;
+    private volatile NameIndex names;
+    private volatile CountryDictionary countries;
+
+    /**
+     * Load the whole catalogue from the Database on the heap, without any file.
+     *
+     * @author  Dray Raphael
+     * @param connection A connection to the Database
+     * @return The loaded catalogue
+     * @throws SQLException If the Database cannot be read
+     * @see CatalogueFile#load(Connection)
+     */
+    public static Catalogue load(final Connection connection) throws SQLException {
+        return CatalogueFile.load(connection);
+    }
+
+    /**
+     * Constructor of the views over the sections of an image.
+     *
+     * @author  Dray Raphael
+     * @param image The image built or mapped by CatalogueFile
+     * @see CatalogueFile
+     */
+    Catalogue(final ByteBuffer image) {
+        this.filmIds = ints(image, CatalogueFile.Section.FILM_IDS);
+        this.rowOfId = ints(image, CatalogueFile.Section.ROW_OF_ID);
+        this.annee = ints(image, CatalogueFile.Section.ANNEE);
+        this.duree = ints(image, CatalogueFile.Section.DUREE);
+        this.pays = ints(image, CatalogueFile.Section.PAYS);
+        this.titre = ints(image, CatalogueFile.Section.TITRE);
+        this.titreRecherche = ints(image, CatalogueFile.Section.TITRE_RECHERCHE);
+        this.autresTitresStart = ints(image, CatalogueFile.Section.AUTRES_TITRES_START);
+        this.autresTitres = ints(image, CatalogueFile.Section.AUTRES_TITRES);
+        this.autresTitresRecherche = ints(image, CatalogueFile.Section.AUTRES_TITRES_RECHERCHE);
+        this.realisateursStart = ints(image, CatalogueFile.Section.REALISATEURS_START);
+        this.realisateurs = ints(image, CatalogueFile.Section.REALISATEURS);
+        this.acteursStart = ints(image, CatalogueFile.Section.ACTEURS_START);
+        this.acteurs = ints(image, CatalogueFile.Section.ACTEURS);
+        this.noms = ints(image, CatalogueFile.Section.NOMS);
+        this.prenoms = ints(image, CatalogueFile.Section.PRENOMS);
+        this.nomsSansAccent = ints(image, CatalogueFile.Section.NOMS_SANS_ACCENT);
+        this.prenomsSansAccent = ints(image, CatalogueFile.Section.PRENOMS_SANS_ACCENT);
+        this.filmsRealisateurStart = ints(image, CatalogueFile.Section.FILMS_REALISATEUR_START);
+        this.filmsRealisateur = ints(image, CatalogueFile.Section.FILMS_REALISATEUR);
+        this.filmsActeurStart = ints(image, CatalogueFile.Section.FILMS_ACTEUR_START);
+        this.filmsActeur = ints(image, CatalogueFile.Section.FILMS_ACTEUR);
+        this.codesPays = ints(image, CatalogueFile.Section.CODES_PAYS);
+        this.nomsPays = ints(image, CatalogueFile.Section.NOMS_PAYS);
+        this.filmsPaysStart = ints(image, CatalogueFile.Section.FILMS_PAYS_START);
+        this.filmsPays = ints(image, CatalogueFile.Section.FILMS_PAYS);
+        this.anneeMin = ints(image, CatalogueFile.Section.ANNEE_MIN).get(0);
+        this.filmsAnneeStart = ints(image, CatalogueFile.Section.FILMS_ANNEE_START);
+        this.filmsAnnee = ints(image, CatalogueFile.Section.FILMS_ANNEE);
+        this.strings = new Strings(ints(image, CatalogueFile.Section.STRING_OFFSETS),
+                                   CatalogueFile.section(image, CatalogueFile.Section.STRING_DATA));
+    }
+
+    /**
+     * @return The number of films of the catalogue
+     */
+    public int size() {
+        return this.filmIds.limit();
+    }
+
+    /**
+     * Return the films matching the keyword TITRE, with the semantic of the LIKE of the SQL path:
+     * the words of the value must appear in this order in the title or in an other title, anywhere in a word,
+     * the case of the ASCII letters being ignored.
+     *
+     * @author  Dray Raphael
+     * @param name The title of the film that we are searching for
+     * @return The PostingList of all the idx found
+     */
+    public PostingList titre(final String name) {
+        String[] words = lowerAscii(name).split(" ");
+        byte[][] morceaux = new byte[words.length][];
+        for (int i = 0; i < words.length; ++i) morceaux[i] = utf8(words[i]);
+
+        PostingList.Builder result = new PostingList.Builder();
+        for (int row = 0; row < size(); ++row) {
+            boolean found = this.strings.containsInOrder(this.titreRecherche.get(row), morceaux);
+            for (int k = this.autresTitresStart.get(row); !found && k < this.autresTitresStart.get(row + 1); ++k)
+                found = this.strings.containsInOrder(this.autresTitresRecherche.get(k), morceaux);
+            if (found) result.add(this.filmIds.get(row));
+        }
+        return result.build();
+    }
+
+    /**
+     * Return the films of the persons named by the value given in parameter, compared without accents nor case,
+     * in the role of the KeyWord: the films they directed for DE, the films they act in for AVEC.
+     * The index of the names is built from the columns on the first call.
+     *
+     * @author  Dray Raphael
+     * @param keyWord The KeyWord of the request, REALISATEUR or ACTEUR
+     * @param name The value of the request
+     * @return The PostingList of all the idx found
+     * @see NameIndex#films(KeyWord, String)
+     */
+    public PostingList personne(final KeyWord keyWord, final String name) {
+        return getNames().films(keyWord, name);
+    }
+
+    /**
+     * Return the index of the names of the persons of the catalogue, built from the columns on the first call.
+     *
+     * @author  Dray Raphael
+     * @return The index of the names, by row of the persons
+     * @see NameIndex
+     */
+    public NameIndex getNames() {
+        NameIndex names = this.names;
+        if (names == null) {
+            int n = this.noms.limit();
+            int[] rows = new int[n];
+            String[] noms = new String[n], prenoms = new String[n];
+            PostingList[] realisateurs = new PostingList[n], acteurs = new PostingList[n];
+            for (int row = 0; row < n; ++row) {
+                rows[row] = row;
+                noms[row] = this.strings.get(this.nomsSansAccent.get(row));
+                int prenom = this.prenomsSansAccent.get(row);
+                prenoms[row] = prenom < 0 ? null : this.strings.get(prenom);
+                realisateurs[row] = slice(this.filmsRealisateurStart, this.filmsRealisateur, row);
+                acteurs[row] = slice(this.filmsActeurStart, this.filmsActeur, row);
+            }
+            this.names = names = new NameIndex(rows, noms, prenoms, realisateurs, acteurs, 0);
+        }
+        return names;
+    }
+
+    /**
+     * Return the films of the countries given in parameter.
+     *
+     * @author  Dray Raphael
+     * @param codes The codes of the countries, resolved by the CountryDictionary
+     * @return The PostingList of all the idx found
+     * @see CountryDictionary#films(String[])
+     */
+    public PostingList pays(final String[] codes) {
+        return getCountries().films(codes);
+    }
+
+    /**
+     * Return the dictionary of the countries of the catalogue, built from the columns on the first call.
+     *
+     * @author  Dray Raphael
+     * @return The dictionary of the countries
+     * @see CountryDictionary
+     */
+    public CountryDictionary getCountries() {
+        CountryDictionary countries = this.countries;
+        if (countries == null) {
+            int n = this.codesPays.limit();
+            String[] codes = new String[n], noms = new String[n];
+            PostingList[] films = new PostingList[n];
+            for (int p = 0; p < n; ++p) {
+                codes[p] = this.strings.get(this.codesPays.get(p));
+                noms[p] = this.strings.get(this.nomsPays.get(p));
+                films[p] = slice(this.filmsPaysStart, this.filmsPays, p);
+            }
+            this.countries = countries = new CountryDictionary(codes, noms, films, 0);
+        }
+        return countries;
+    }
+
+    /**
+     * Return the films released during the years between min and max, inclusive.
+     * The films are grouped by year, so the range is a contiguous slice of the index.
+     *
+     * @author  Dray Raphael
+     * @param min The first year
+     * @param max The last year
+     * @return The PostingList of all the idx found
+     */
+    public PostingList annees(final int min, final int max) {
+        int start = offsetAnnee(min), end = offsetAnnee((long) max + 1);
+        if (start >= end) return PostingList.EMPTY;
+
+        int[] ids = new int[end - start];
+        this.filmsAnnee.get(start, ids);
+        return PostingList.of(ids, ids.length);
+    }
+
+    /**
+     * Return the number of films released during the years between min and max, inclusive, without building them.
+     *
+     * @author  Dray Raphael
+     * @param min The first year
+     * @param max The last year
+     * @return The number of films, 0 if min is after max
+     */
+    public int countAnnees(final int min, final int max) {
+        return Math.max(0, offsetAnnee((long) max + 1) - offsetAnnee(min));
+    }
+
+    /**
+     * @param year A year
+     * @return The position in the index of the first film released during the year or after it
+     */
+    private int offsetAnnee(final long year) {
+        int years = this.filmsAnneeStart.limit() - 1;
+        return this.filmsAnneeStart.get((int) Math.max(0, Math.min(years, year - this.anneeMin)));
+    }
+
+    /**
+     * Return the order of the films of the catalogue, ranked from the columns on the first call.
+     *
+     * @author  Dray Raphael
+     * @return The order of InfoFilm.compareTo over the films
+     * @see FilmOrder
+     */
+    public FilmOrder getOrder() {
+        FilmOrder order = this.order;
+        if (order == null) {
+            int n = size();
+            int[] ids = new int[n], annees = new int[n];
+            String[] titres = new String[n], pays = new String[n];
+            for (int row = 0; row < n; ++row) {
+                ids[row] = this.filmIds.get(row);
+                titres[row] = this.strings.get(this.titre.get(row));
+                annees[row] = this.annee.get(row);
+                int p = this.pays.get(row);
+                pays[row] = p < 0 ? "" : this.strings.get(this.nomsPays.get(p));
+            }
+            this.order = order = new FilmOrder(ids, titres, annees, pays, 0);
+        }
+        return order;
+    }
+
+    /**
+     * Build the InfoFilm of the films given in parameter from the columns.
+     *
+     * @author  Dray Raphael
+     * @param ids The id_film to hydrate, the films are returned in the order of the list
+     * @return The information over the films, in the same order than ids (unknown ids are skipped)
+     * @see InfoFilm
+     */
+    public LinkedList<InfoFilm> getInfoFilms(final int[] ids) {
+        LinkedList<InfoFilm> films = new LinkedList<>();
+        for (int id : ids) {
+            int row = rowOf(id);
+            if (row < 0) continue;
+
+            ArrayList<NomPersonne> reals = new ArrayList<>();
+            for (int k = this.realisateursStart.get(row); k < this.realisateursStart.get(row + 1); ++k)
+                reals.add(nomPersonne(this.realisateurs.get(k)));
+            ArrayList<NomPersonne> acts = new ArrayList<>();
+            for (int k = this.acteursStart.get(row); k < this.acteursStart.get(row + 1); ++k)
+                acts.add(nomPersonne(this.acteurs.get(k)));
+            ArrayList<String> autres = new ArrayList<>();
+            for (int k = this.autresTitresStart.get(row); k < this.autresTitresStart.get(row + 1); ++k)
+                autres.add(this.strings.get(this.autresTitres.get(k)));
+
+            int p = this.pays.get(row);
+            films.addLast(new InfoFilm(this.strings.get(this.titre.get(row)), reals, acts,
+                                       p < 0 ? "" : this.strings.get(this.nomsPays.get(p)),
+                                       this.annee.get(row), this.duree.get(row), autres));
+        }
+        return films;
+    }
+
+    /**
+     * @param id An id_film
+     * @return The row of the film, -1 if it is not in the catalogue
+     */
+    private int rowOf(final int id) {
+        return id >= 0 && id < this.rowOfId.limit() ? this.rowOfId.get(id) : -1;
+    }
+
+    /**
+     * @param row The row of a person
+     * @return The name of the person
+     */
+    private NomPersonne nomPersonne(final int row) {
+        int prenom = this.prenoms.get(row);
+        return new NomPersonne(this.strings.get(this.noms.get(row)), prenom < 0 ? null : this.strings.get(prenom));
+    }
+
+    /**
+     * Return as a PostingList the values of a row of a CSR adjacency list whose values are film ids
+     * @param start The start of each row
+     * @param values The values of all the rows
+     * @param row The row
+     * @return The PostingList of the row
+     */
+    private static PostingList slice(final IntBuffer start, final IntBuffer values, final int row) {
+        int from = start.get(row), to = start.get(row + 1);
+        int[] ids = new int[to - from];
+        values.get(from, ids);
+        return PostingList.of(ids, ids.length);
+    }
+
+    /**
+     * @param image An image
+     * @param section A section of int
+     * @return The view of the section
+     */
+    private static IntBuffer ints(final ByteBuffer image, final CatalogueFile.Section section) {
+        return CatalogueFile.section(image, section).asIntBuffer();
+    }
+
+    /**
+     * @param s A String
+     * @return The UTF-8 bytes of the String
+     */
+    private static byte[] utf8(final String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lower the case of the ASCII letters only, like SQLite LIKE
+     * @param s A String
+     * @return The String with its ASCII letters in lower case
+     */
+    static String lowerAscii(final String s) {
+        char[] chars = null;
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (chars == null) chars = s.toCharArray();
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars == null ? s : new String(chars);
+    }
+
+    /**
+     * View over the table of Strings of an image: the UTF-8 bytes of String i
+     * are data[offsets[i]] to data[offsets[i + 1] - 1]. The Strings are compared
+     * on their bytes and only decoded when a film is hydrated.
+     */
+    private static final class Strings {
+        private final IntBuffer offsets;
+        private final ByteBuffer data;
+
+        private Strings(final IntBuffer offsets, final ByteBuffer data) {
+            this.offsets = offsets;
+            this.data = data;
+        }
+
+        private String get(final int code) {
+            int from = this.offsets.get(code);
+            byte[] bytes = new byte[this.offsets.get(code + 1) - from];
+            this.data.get(from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private boolean containsInOrder(final int code, final byte[][] pieces) {
+            int from = this.offsets.get(code), to = this.offsets.get(code + 1);
+            for (byte[] piece : pieces) {
+                int index = indexOf(from, to, piece);
+                if (index < 0) return false;
+                from = index + piece.length;
+            }
+            return true;
+        }
+
+        private int indexOf(final int from, final int to, final byte[] piece) {
+            outer:
+            for (int i = from; i <= to - piece.length; ++i) {
+                for (int k = 0; k < piece.length; ++k)
+                    if (this.data.get(i + k) != piece[k]) continue outer;
+                return i;
+            }
+            return -1;
+        }
+    }
+}
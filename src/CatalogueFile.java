@@ -0,0 +1,499 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Binary image of the Catalogue and its file, written next to the *.sqlite file.
+ * <p>
+ * The image is made of a header followed by sections of int or bytes, little endian and aligned on 8 bytes:
+ * <pre>
+ * 0   int  MAGIC
+ * 4   int  VERSION
+ * 8   int  number of sections
+ * 16  long length of the source Database
+ * 24  long last modification of the source Database
+ * 32  int  file change counter of the source Database (offset 24 of its SQLite header)
+ * 40  long CRC32 of the sections
+ * 48  long length of the sections
+ * 56  for each Section: long offset from the start of the image, int number of elements, int unused
+ * </pre>
+ * The Catalogue reads the sections in place, so an image mapped by FileChannel.map needs no deserialization.
+ * An image whose fingerprint differs from the one of the Database, or whose checksum is wrong, is rebuilt.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+public final class CatalogueFile {
+    static final int MAGIC = 0x58494652; // "RFIX"
+    static final int VERSION = 5;
+    static final String EXTENSION = ".idx";
+
+    private static final int HEADER_SIZE = 56;
+    private static final int SECTION_ENTRY_SIZE = 16;
+    private static final Logger LOGGER = Logger.getLogger(CatalogueFile.class.getName());
+
+    /**
+     * Sections of the image, in the order in which they are written
+     */
+    enum Section {
+        FILM_IDS, ROW_OF_ID, ANNEE, DUREE, PAYS, TITRE, TITRE_RECHERCHE,
+        AUTRES_TITRES_START, AUTRES_TITRES, AUTRES_TITRES_RECHERCHE,
+        REALISATEURS_START, REALISATEURS, ACTEURS_START, ACTEURS,
+        NOMS, PRENOMS, NOMS_SANS_ACCENT, PRENOMS_SANS_ACCENT,
+        FILMS_REALISATEUR_START, FILMS_REALISATEUR, FILMS_ACTEUR_START, FILMS_ACTEUR,
+        CODES_PAYS, NOMS_PAYS, FILMS_PAYS_START, FILMS_PAYS,
+        ANNEE_MIN, FILMS_ANNEE_START, FILMS_ANNEE,
+        STRING_OFFSETS, STRING_DATA
+    }
+
+    private CatalogueFile() {
+    }
+
+    /**
+     * Open the Catalogue of the Database given in parameter from its image file, mapped in memory.
+     * The image is (re)built from the Database and written next to it if it is missing or stale;
+     * if it cannot be written, the Catalogue is kept on the heap.
+     *
+     * @author  Dray Raphael
+     * @param SQLiteFilename The File *.sqlite which is the SQLite Database
+     * @param connection A connection to the Database, only used to rebuild the image
+     * @return The Catalogue of the Database
+     * @throws SQLException If the Database cannot be read
+     * @see FileChannel#map(FileChannel.MapMode, long, long)
+     */
+    public static Catalogue open(final String SQLiteFilename, final Connection connection) throws SQLException {
+        Path source = Paths.get(SQLiteFilename);
+        Path index = Paths.get(SQLiteFilename + EXTENSION);
+        Fingerprint fingerprint = Fingerprint.of(source);
+
+        ByteBuffer image = map(index);
+        if (image != null && isValid(image, fingerprint)) return new Catalogue(image);
+
+        LOGGER.info("Building catalogue index " + index + "..");
+        ByteBuffer built = build(connection, fingerprint);
+        try {
+            Path temp = Files.createTempFile(index.toAbsolutePath().getParent(), index.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer toWrite = built.duplicate();
+                    toWrite.clear();
+                    while (toWrite.hasRemaining()) channel.write(toWrite);
+                    channel.force(true);
+                }
+                Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            image = map(index);
+            if (image != null && isValid(image, fingerprint)) return new Catalogue(image);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Catalogue index " + index + " cannot be written, it is kept in memory", e);
+        }
+        return new Catalogue(built);
+    }
+
+    /**
+     * Build the image of the Catalogue of the Database on the heap, without any file.
+     *
+     * @author  Dray Raphael
+     * @param connection A connection to the Database
+     * @return The Catalogue of the Database
+     * @throws SQLException If the Database cannot be read
+     */
+    public static Catalogue load(final Connection connection) throws SQLException {
+        return new Catalogue(build(connection, new Fingerprint(0, 0, 0)));
+    }
+
+    /**
+     * Return the view of a section of an image
+     * @param image The image
+     * @param section The section
+     * @return The bytes of the section, little endian
+     */
+    static ByteBuffer section(final ByteBuffer image, final Section section) {
+        int entry = HEADER_SIZE + section.ordinal() * SECTION_ENTRY_SIZE;
+        int offset = (int) image.getLong(entry);
+        int length = image.getInt(entry + 8);
+        int bytes = section == Section.STRING_DATA ? length : length * Integer.BYTES;
+        return image.duplicate().position(offset).limit(offset + bytes).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Map the image file in memory, read only
+     * @param index The image file
+     * @return The mapped image, null if it does not exist or cannot be read
+     */
+    private static ByteBuffer map(final Path index) {
+        if (!Files.isRegularFile(index)) return null;
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check the header of an image: magic, version, fingerprint of the source and checksum of the sections
+     * @param image The image
+     * @param fingerprint The fingerprint of the Database
+     * @return true if the image can be used
+     */
+    private static boolean isValid(final ByteBuffer image, final Fingerprint fingerprint) {
+        int sections = Section.values().length;
+        if (image.capacity() < HEADER_SIZE + sections * SECTION_ENTRY_SIZE) return false;
+        if (image.getInt(0) != MAGIC || image.getInt(4) != VERSION || image.getInt(8) != sections) return false;
+        if (image.getLong(16) != fingerprint.length || image.getLong(24) != fingerprint.lastModified
+            || image.getInt(32) != fingerprint.changeCounter) return false;
+
+        long payloadLength = image.getLong(48);
+        int payloadStart = align(HEADER_SIZE + sections * SECTION_ENTRY_SIZE);
+        if (payloadStart + payloadLength != image.capacity()) return false;
+
+        CRC32 crc = new CRC32();
+        crc.update(image.duplicate().position(payloadStart));
+        return crc.getValue() == image.getLong(40);
+    }
+
+    /**
+     * Read the whole Database and build the image of its Catalogue on the heap
+     * @param connection A connection to the Database
+     * @param fingerprint The fingerprint of the Database written in the header
+     * @return The image
+     * @throws SQLException If the Database cannot be read
+     */
+    private static ByteBuffer build(final Connection connection, final Fingerprint fingerprint) throws SQLException {
+        EnumMap<Section, int[]> sections = new EnumMap<>(Section.class);
+        StringTable strings = new StringTable();
+
+        try (Statement stmt = connection.createStatement()) {
+            // Pays
+            IntColumn codes = new IntColumn(), noms = new IntColumn();
+            HashMap<String, Integer> indexPays = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT code, nom FROM pays ORDER BY code")) {
+                while (rs.next()) {
+                    indexPays.put(rs.getString(1), codes.size());
+                    codes.add(strings.encode(rs.getString(1)));
+                    noms.add(strings.encode(rs.getString(2)));
+                }
+            }
+            sections.put(Section.CODES_PAYS, codes.toArray());
+            sections.put(Section.NOMS_PAYS, noms.toArray());
+            int nbPays = codes.size();
+
+            // Films
+            IntColumn ids = new IntColumn(), annees = new IntColumn(), durees = new IntColumn(), paysFilms = new IntColumn(),
+                      titres = new IntColumn(), titresRecherche = new IntColumn();
+            try (ResultSet rs = stmt.executeQuery("SELECT id_film, titre, annee, duree, pays FROM films ORDER BY id_film")) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                    titres.add(strings.encode(rs.getString(2)));
+                    titresRecherche.add(strings.encode(Catalogue.lowerAscii(rs.getString(2))));
+                    annees.add(rs.getInt(3));
+                    durees.add(rs.getInt(4));
+                    Integer p = indexPays.get(rs.getString(5));
+                    paysFilms.add(p == null ? -1 : p);
+                }
+            }
+            int[] filmIds = ids.toArray();
+            int n = filmIds.length;
+            sections.put(Section.FILM_IDS, filmIds);
+            sections.put(Section.ANNEE, annees.toArray());
+            sections.put(Section.DUREE, durees.toArray());
+            sections.put(Section.PAYS, paysFilms.toArray());
+            sections.put(Section.TITRE, titres.toArray());
+            sections.put(Section.TITRE_RECHERCHE, titresRecherche.toArray());
+
+            int[] rowOfId = new int[n == 0 ? 0 : filmIds[n - 1] + 1];
+            Arrays.fill(rowOfId, -1);
+            for (int row = 0; row < n; ++row) rowOfId[filmIds[row]] = row;
+            sections.put(Section.ROW_OF_ID, rowOfId);
+
+            // Autres titres
+            IntColumn autresRows = new IntColumn(), autres = new IntColumn(), autresRecherche = new IntColumn();
+            try (ResultSet rs = stmt.executeQuery("SELECT id_film, titre FROM autres_titres ORDER BY id_film")) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    if (id < 0 || id >= rowOfId.length || rowOfId[id] < 0) continue;
+                    autresRows.add(rowOfId[id]);
+                    autres.add(strings.encode(rs.getString(2)));
+                    autresRecherche.add(strings.encode(Catalogue.lowerAscii(rs.getString(2))));
+                }
+            }
+            int[][] csr = csr(n, autresRows, autres);
+            sections.put(Section.AUTRES_TITRES_START, csr[0]);
+            sections.put(Section.AUTRES_TITRES, csr[1]);
+            sections.put(Section.AUTRES_TITRES_RECHERCHE, csr(n, autresRows, autresRecherche)[1]);
+
+            // Personnes
+            IntColumn nomsPersonnes = new IntColumn(), prenomsPersonnes = new IntColumn(),
+                      nomsSansAccent = new IntColumn(), prenomsSansAccent = new IntColumn();
+            HashMap<Integer, Integer> rowOfPersonne = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT id_personne, nom, prenom, nom_sans_accent, prenom_sans_accent " +
+                                                  "FROM personnes ORDER BY id_personne")) {
+                while (rs.next()) {
+                    rowOfPersonne.put(rs.getInt(1), nomsPersonnes.size());
+                    nomsPersonnes.add(strings.encode(rs.getString(2)));
+                    prenomsPersonnes.add(rs.getString(3) == null ? -1 : strings.encode(rs.getString(3)));
+                    nomsSansAccent.add(strings.encode(rs.getString(4)));
+                    prenomsSansAccent.add(rs.getString(5) == null ? -1 : strings.encode(rs.getString(5)));
+                }
+            }
+            int nbPersonnes = nomsPersonnes.size();
+            sections.put(Section.NOMS, nomsPersonnes.toArray());
+            sections.put(Section.PRENOMS, prenomsPersonnes.toArray());
+            sections.put(Section.NOMS_SANS_ACCENT, nomsSansAccent.toArray());
+            sections.put(Section.PRENOMS_SANS_ACCENT, prenomsSansAccent.toArray());
+
+            // Generique
+            IntColumn realRows = new IntColumn(), reals = new IntColumn(), actRows = new IntColumn(), acts = new IntColumn(),
+                      realFilms = new IntColumn(), actFilms = new IntColumn();
+            try (ResultSet rs = stmt.executeQuery("SELECT id_film, id_personne, role FROM generique ORDER BY id_film")) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    Integer personne = rowOfPersonne.get(rs.getInt(2));
+                    if (id < 0 || id >= rowOfId.length || rowOfId[id] < 0 || personne == null) continue;
+                    if ("R".equals(rs.getString(3))) {
+                        realRows.add(rowOfId[id]);
+                        reals.add(personne);
+                        realFilms.add(id);
+                    } else if ("A".equals(rs.getString(3))) {
+                        actRows.add(rowOfId[id]);
+                        acts.add(personne);
+                        actFilms.add(id);
+                    }
+                }
+            }
+            csr = csr(n, realRows, reals);
+            sections.put(Section.REALISATEURS_START, csr[0]);
+            sections.put(Section.REALISATEURS, csr[1]);
+            csr = csr(n, actRows, acts);
+            sections.put(Section.ACTEURS_START, csr[0]);
+            sections.put(Section.ACTEURS, csr[1]);
+            csr = csr(nbPersonnes, reals, realFilms);
+            sections.put(Section.FILMS_REALISATEUR_START, csr[0]);
+            sections.put(Section.FILMS_REALISATEUR, csr[1]);
+            csr = csr(nbPersonnes, acts, actFilms);
+            sections.put(Section.FILMS_ACTEUR_START, csr[0]);
+            sections.put(Section.FILMS_ACTEUR, csr[1]);
+
+            // Films par pays et par annee
+            int[] paysRows = sections.get(Section.PAYS), anneesRows = sections.get(Section.ANNEE);
+            IntColumn filmsPaysRows = new IntColumn(), filmsPays = new IntColumn();
+            int anneeMin = Integer.MAX_VALUE, anneeMax = Integer.MIN_VALUE;
+            for (int row = 0; row < n; ++row) {
+                if (paysRows[row] >= 0) {
+                    filmsPaysRows.add(paysRows[row]);
+                    filmsPays.add(filmIds[row]);
+                }
+                anneeMin = Math.min(anneeMin, anneesRows[row]);
+                anneeMax = Math.max(anneeMax, anneesRows[row]);
+            }
+            csr = csr(nbPays, filmsPaysRows, filmsPays);
+            sections.put(Section.FILMS_PAYS_START, csr[0]);
+            sections.put(Section.FILMS_PAYS, csr[1]);
+
+            if (n == 0) anneeMin = anneeMax = 0;
+            IntColumn anneeRows = new IntColumn(), filmsAnnee = new IntColumn();
+            for (int row = 0; row < n; ++row) {
+                anneeRows.add(anneesRows[row] - anneeMin);
+                filmsAnnee.add(filmIds[row]);
+            }
+            csr = csr(anneeMax - anneeMin + 1, anneeRows, filmsAnnee);
+            sections.put(Section.ANNEE_MIN, new int[] {anneeMin});
+            sections.put(Section.FILMS_ANNEE_START, csr[0]);
+            sections.put(Section.FILMS_ANNEE, csr[1]);
+        }
+
+        byte[] data = strings.data();
+        sections.put(Section.STRING_OFFSETS, strings.offsets());
+
+        return write(sections, data, fingerprint);
+    }
+
+    /**
+     * Serialize the sections in an image on the heap
+     * @param sections The int sections
+     * @param data The bytes of the STRING_DATA section
+     * @param fingerprint The fingerprint of the Database
+     * @return The image
+     */
+    private static ByteBuffer write(final EnumMap<Section, int[]> sections, final byte[] data, final Fingerprint fingerprint) {
+        Section[] all = Section.values();
+        int payloadStart = align(HEADER_SIZE + all.length * SECTION_ENTRY_SIZE);
+        long size = payloadStart;
+        for (Section section : all)
+            size = align(size + (section == Section.STRING_DATA ? data.length : (long) sections.get(section).length * Integer.BYTES));
+
+        ByteBuffer image = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        image.putInt(0, MAGIC);
+        image.putInt(4, VERSION);
+        image.putInt(8, all.length);
+        image.putLong(16, fingerprint.length);
+        image.putLong(24, fingerprint.lastModified);
+        image.putInt(32, fingerprint.changeCounter);
+        image.putLong(48, size - payloadStart);
+
+        int offset = payloadStart;
+        for (Section section : all) {
+            int entry = HEADER_SIZE + section.ordinal() * SECTION_ENTRY_SIZE;
+            image.putLong(entry, offset);
+            if (section == Section.STRING_DATA) {
+                image.putInt(entry + 8, data.length);
+                image.put(offset, data);
+                offset = align(offset + data.length);
+            } else {
+                int[] values = sections.get(section);
+                image.putInt(entry + 8, values.length);
+                image.position(offset);
+                image.asIntBuffer().put(values);
+                offset = align(offset + values.length * Integer.BYTES);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(image.duplicate().position(payloadStart));
+        image.putLong(40, crc.getValue());
+        return image.clear();
+    }
+
+    /**
+     * @param value A size or an offset
+     * @return The value rounded up to a multiple of 8
+     */
+    private static int align(final long value) {
+        return (int) ((value + 7) & ~7L);
+    }
+
+    /**
+     * Build a CSR adjacency list from the pairs (row, value), keeping the order of the values of each row.
+     * @param rows The number of rows
+     * @param pairRows The row of each pair
+     * @param pairValues The value of each pair
+     * @return {start, values}
+     */
+    private static int[][] csr(final int rows, final IntColumn pairRows, final IntColumn pairValues) {
+        int[] start = new int[rows + 1];
+        for (int i = 0; i < pairRows.size(); ++i) start[pairRows.get(i) + 1]++;
+        for (int r = 0; r < rows; ++r) start[r + 1] += start[r];
+
+        int[] values = new int[pairRows.size()];
+        int[] next = Arrays.copyOf(start, rows);
+        for (int i = 0; i < pairRows.size(); ++i) values[next[pairRows.get(i)]++] = pairValues.get(i);
+        return new int[][] {start, values};
+    }
+
+    /**
+     * Fingerprint of the source Database stored in the header of the image
+     */
+    private static final class Fingerprint {
+        private final long length;
+        private final long lastModified;
+        private final int changeCounter;
+
+        private Fingerprint(final long length, final long lastModified, final int changeCounter) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.changeCounter = changeCounter;
+        }
+
+        /**
+         * Read the fingerprint of a Database: its length, its last modification
+         * and the file change counter of its SQLite header, incremented by every transaction
+         * @param source The *.sqlite file
+         * @return The fingerprint, empty if the file cannot be read
+         */
+        private static Fingerprint of(final Path source) {
+            File file = source.toFile();
+            int changeCounter = 0;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                if (raf.length() >= 28) {
+                    raf.seek(24);
+                    changeCounter = raf.readInt();
+                }
+            } catch (IOException e) {
+                return new Fingerprint(0, 0, 0);
+            }
+            return new Fingerprint(file.length(), file.lastModified(), changeCounter);
+        }
+    }
+
+    /**
+     * Table of the distinct Strings of the image, stored as UTF-8 bytes with their offsets.
+     */
+    private static final class StringTable {
+        private final HashMap<String, Integer> codes = new HashMap<>();
+        private final ArrayList<String> values = new ArrayList<>();
+
+        private int encode(final String value) {
+            Integer code = this.codes.get(value);
+            if (code == null) {
+                code = this.values.size();
+                this.codes.put(value, code);
+                this.values.add(value);
+            }
+            return code;
+        }
+
+        private String get(final int code) {
+            return this.values.get(code);
+        }
+
+        private int[] offsets() {
+            int[] offsets = new int[this.values.size() + 1];
+            for (int i = 0; i < this.values.size(); ++i)
+                offsets[i + 1] = offsets[i] + this.values.get(i).getBytes(StandardCharsets.UTF_8).length;
+            return offsets;
+        }
+
+        private byte[] data() {
+            ByteBuffer data = ByteBuffer.allocate(offsets()[this.values.size()]);
+            for (String value : this.values) data.put(value.getBytes(StandardCharsets.UTF_8));
+            return data.array();
+        }
+    }
+
+    /**
+     * Growable column of int used while building the image.
+     */
+    private static final class IntColumn {
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(final int value) {
+            if (this.size == this.values.length) this.values = Arrays.copyOf(this.values, this.size * 2);
+            this.values[this.size++] = value;
+        }
+
+        private int get(final int index) {
+            return this.values[index];
+        }
+
+        private int size() {
+            return this.size;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(this.values, this.size);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Bounded pool of read-only connections to a SQLite Database, opened once at construction.
+ * Each connection comes with its own StatementCache and is used by a single thread at a time,
+ * between acquire() and release().
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+public class ConnectionPool {
+    private static final String DB_URL = "jdbc:sqlite:";
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final ArrayBlockingQueue<PooledConnection> idle;
+    private final ArrayList<PooledConnection> connections;
+    private volatile boolean closed;
+
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger peakInUse = new AtomicInteger();
+
+    /**
+     * Constructor that opens all the read-only connections of the pool.
+     *
+     * @author  Dray Raphael
+     * @param SQLiteFilename The File *.sqlite which is the SQLite Database
+     * @param size The number of connections of the pool
+     * @param statementCacheCapacity The number of statements cached by each connection
+     * @throws RuntimeException If we didn't succeed to connect to the Database
+     * @see Connection
+     * @see StatementCache
+     */
+    public ConnectionPool(final String SQLiteFilename, final int size, final int statementCacheCapacity) {
+        if (size < 1) throw new IllegalArgumentException("The pool needs at least one connection");
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.connections = new ArrayList<>(size);
+
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        try {
+            for (int i = 0; i < size; ++i) {
+                Connection connection = DriverManager.getConnection(DB_URL + SQLiteFilename, config.toProperties());
+                PooledConnection pooled = new PooledConnection(connection, new StatementCache(connection, statementCacheCapacity));
+                this.connections.add(pooled);
+                this.idle.add(pooled);
+            }
+        } catch (SQLException e) {
+            for (PooledConnection pooled : this.connections) pooled.close();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Take a connection of the pool, waiting for one to be released if they are all in use.
+     *
+     * @author  Dray Raphael
+     * @return A connection that must be given back with release()
+     * @throws IllegalStateException If the pool is closed
+     * @throws RuntimeException If no connection has been released in time
+     */
+    public PooledConnection acquire() {
+        if (this.closed) throw new IllegalStateException("The connection pool is closed");
+
+        PooledConnection pooled = this.idle.poll();
+        if (pooled == null) {
+            long start = System.nanoTime();
+            try {
+                pooled = this.idle.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            long waited = System.nanoTime() - start;
+            this.waits.incrementAndGet();
+            this.waitNanos.addAndGet(waited);
+            this.maxWaitNanos.accumulateAndGet(waited, Math::max);
+            if (pooled == null) throw new RuntimeException("No connection released after " + ACQUIRE_TIMEOUT_SECONDS + "s");
+        }
+
+        this.acquisitions.incrementAndGet();
+        this.peakInUse.accumulateAndGet(this.inUse.incrementAndGet(), Math::max);
+        return pooled;
+    }
+
+    /**
+     * Take a connection of the pool if one is idle, without waiting.
+     * A search already holding a connection uses it to take more, so that it never waits for the others.
+     *
+     * @author  Dray Raphael
+     * @return A connection that must be given back with release(), null if they are all in use or the pool is closed
+     */
+    public PooledConnection tryAcquire() {
+        if (this.closed) return null;
+        PooledConnection pooled = this.idle.poll();
+        if (pooled == null) return null;
+
+        this.acquisitions.incrementAndGet();
+        this.peakInUse.accumulateAndGet(this.inUse.incrementAndGet(), Math::max);
+        return pooled;
+    }
+
+    /**
+     * Give back to the pool a connection taken by acquire()
+     * @param pooled The connection to give back
+     * @author Dray Raphael
+     */
+    public void release(final PooledConnection pooled) {
+        this.inUse.decrementAndGet();
+        this.idle.add(pooled);
+    }
+
+    /**
+     * Close the pool: wait for the connections in use to be released, then close all of them.
+     * The connections still in use after CLOSE_TIMEOUT_SECONDS are closed anyway.
+     * @author Dray Raphael
+     */
+    public void close() {
+        this.closed = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CLOSE_TIMEOUT_SECONDS);
+        int drained = 0;
+        try {
+            while (drained < this.connections.size()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || this.idle.poll(remaining, TimeUnit.NANOSECONDS) == null) break;
+                drained++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (drained < this.connections.size())
+            LOGGER.warning((this.connections.size() - drained) + " connection(s) still in use are being closed");
+
+        for (PooledConnection pooled : this.connections) pooled.close();
+    }
+
+    /**
+     * @return The number of connections of the pool
+     */
+    public int getSize() {
+        return this.connections.size();
+    }
+
+    /**
+     * @return The number of connections currently in use
+     */
+    public int getInUse() {
+        return this.inUse.get();
+    }
+
+    /**
+     * @return The maximum number of connections that have been in use at the same time
+     */
+    public int getPeakInUse() {
+        return this.peakInUse.get();
+    }
+
+    /**
+     * @return The number of connections taken from the pool
+     */
+    public long getAcquisitions() {
+        return this.acquisitions.get();
+    }
+
+    /**
+     * @return The number of acquisitions that had to wait for a connection to be released
+     */
+    public long getWaits() {
+        return this.waits.get();
+    }
+
+    /**
+     * @return The total time spent waiting for a connection, in nanoseconds
+     */
+    public long getWaitNanos() {
+        return this.waitNanos.get();
+    }
+
+    /**
+     * @return The longest time spent waiting for a connection, in nanoseconds
+     */
+    public long getMaxWaitNanos() {
+        return this.maxWaitNanos.get();
+    }
+
+    /**
+     * @return The number of statements found in the caches of all the connections
+     */
+    public long getStatementHits() {
+        long hits = 0;
+        for (PooledConnection pooled : this.connections) hits += pooled.statements.getHits();
+        return hits;
+    }
+
+    /**
+     * @return The number of statements compiled by all the connections
+     */
+    public long getStatementCompiles() {
+        long compiles = 0;
+        for (PooledConnection pooled : this.connections) compiles += pooled.statements.getCompiles();
+        return compiles;
+    }
+
+    /**
+     * A connection of the pool with the cache of its pre-compiled statements.
+     *
+     * @author  Dray Raphael
+     */
+    public static final class PooledConnection {
+        private final Connection connection;
+        private final StatementCache statements;
+
+        private PooledConnection(final Connection connection, final StatementCache statements) {
+            this.connection = connection;
+            this.statements = statements;
+        }
+
+        /**
+         * Connection accessor
+         * @return The read-only connection to the Database
+         */
+        public Connection getConnection() {
+            return this.connection;
+        }
+
+        /**
+         * Statement cache accessor
+         * @return The cache of the statements of the connection
+         */
+        public StatementCache getStatements() {
+            return this.statements;
+        }
+
+        /**
+         * Close the statements and the connection, logging the error if any
+         */
+        private void close() {
+            try {
+                this.statements.close();
+                this.connection.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Connection cannot be closed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Dictionary of the countries of the table pays, code to name and name to codes, with the films of each country.
+ * <p>
+ * The table pays is tiny, so it is read once: the values of PAYS are resolved to country codes
+ * when the request is analyzed, and the films of a request are the union of the prebuilt posting lists
+ * of its countries. The names and the codes are compared once folded like the names of the persons,
+ * and a name written "Cook, Îles" also has the alias "Îles Cook". The codes are compared without case.
+ * A value of more than two characters is the end of the name (or of an alias) of the country,
+ * otherwise it is the end of its code.
+ * The dictionary is immutable, so it can be shared between threads.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see Analyzer
+ * @see NameIndex#fold(String)
+ */
+public final class CountryDictionary {
+    private static final String SQL_PAYS = "SELECT code, nom FROM pays ORDER BY code";
+    private static final String SQL_FILMS = "SELECT pays, id_film FROM films";
+    private static final String[] NONE = new String[0];
+
+    private final String[] codes;
+    private final String[] noms;
+    private final PostingList[] films;
+    private final HashMap<String, Integer> positionOfCode = new HashMap<>();
+    private final String[] foldedCodes;
+    private final String[][] aliases;
+    private final long generation;
+
+    /**
+     * Constructor of the dictionary of the countries given in parameter, the arrays being indexed by the same position.
+     *
+     * @author  Dray Raphael
+     * @param codes The codes of the countries
+     * @param noms The names of the countries
+     * @param films The films of the countries
+     * @param generation The generation of the Database file the countries were read from
+     * @see DatabaseWatcher
+     */
+    public CountryDictionary(final String[] codes, final String[] noms, final PostingList[] films, final long generation) {
+        this.codes = codes;
+        this.noms = noms;
+        this.films = films;
+        this.generation = generation;
+        this.foldedCodes = new String[codes.length];
+        this.aliases = new String[codes.length][];
+
+        for (int p = 0; p < codes.length; ++p) {
+            this.foldedCodes[p] = Catalogue.lowerAscii(codes[p]);
+            this.positionOfCode.put(this.foldedCodes[p], p);
+            int comma = noms[p].indexOf(',');
+            this.aliases[p] = comma < 0 ? new String[] {NameIndex.fold(noms[p])}
+                                        : new String[] {NameIndex.fold(noms[p]),
+                                                        NameIndex.fold(noms[p].substring(comma + 1) + ' ' + noms[p].substring(0, comma))};
+        }
+    }
+
+    /**
+     * Read all the countries of the Database and the films of each country.
+     *
+     * @author  Dray Raphael
+     * @param connection The connection to the Database
+     * @param generation The generation of the Database file
+     * @return The dictionary of the countries
+     * @throws SQLException If the countries cannot be read
+     * @see DatabaseWatcher
+     */
+    public static CountryDictionary load(final Connection connection, final long generation) throws SQLException {
+        ArrayList<String> codes = new ArrayList<>(), noms = new ArrayList<>();
+        HashMap<String, Integer> positionOf = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SQL_PAYS)) {
+            while (rs.next()) {
+                positionOf.put(Catalogue.lowerAscii(rs.getString(1)), codes.size());
+                codes.add(rs.getString(1));
+                noms.add(rs.getString(2));
+            }
+        }
+
+        PostingList.Builder[] builders = new PostingList.Builder[codes.size()];
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SQL_FILMS)) {
+            while (rs.next()) {
+                String code = rs.getString(1);
+                Integer p = code == null ? null : positionOf.get(Catalogue.lowerAscii(code));
+                if (p == null) continue;
+                if (builders[p] == null) builders[p] = new PostingList.Builder();
+                builders[p].add(rs.getInt(2));
+            }
+        }
+
+        PostingList[] films = new PostingList[builders.length];
+        for (int p = 0; p < films.length; ++p) films[p] = builders[p] == null ? PostingList.EMPTY : builders[p].build();
+        return new CountryDictionary(codes.toArray(NONE), noms.toArray(NONE), films, generation);
+    }
+
+    /**
+     * @return The generation of the Database file the dictionary was built from
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Resolve the value of a request PAYS to the codes of the countries it names
+     *
+     * @author  Dray Raphael
+     * @param value The value of the request
+     * @return The codes of the countries, sorted, empty if the value names no country
+     */
+    public String[] resolve(final String value) {
+        String folded = NameIndex.fold(value);
+        if (folded.isEmpty()) return NONE;
+
+        ArrayList<String> found = new ArrayList<>();
+        for (int p = 0; p < this.codes.length; ++p) {
+            boolean match = false;
+            if (folded.length() > 2)
+                for (String alias : this.aliases[p]) match |= alias.endsWith(folded);
+            else
+                match = this.foldedCodes[p].endsWith(folded);
+            if (match) found.add(this.codes[p]);
+        }
+        String[] codes = found.toArray(NONE);
+        Arrays.sort(codes);
+        return codes;
+    }
+
+    /**
+     * Return the films of the countries given in parameter
+     *
+     * @author  Dray Raphael
+     * @param codes The codes of the countries, resolved by resolve()
+     * @return The PostingList of all the idx found
+     */
+    public PostingList films(final String[] codes) {
+        PostingList result = PostingList.EMPTY;
+        for (String code : codes) {
+            Integer p = this.positionOfCode.get(Catalogue.lowerAscii(code));
+            if (p != null) result = result.union(this.films[p]);
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of films of the countries given in parameter, without building them
+     *
+     * @author  Dray Raphael
+     * @param codes The codes of the countries, resolved by resolve()
+     * @return The number of films
+     * @see Statistics
+     */
+    public long count(final String[] codes) {
+        long count = 0;
+        for (String code : codes) {
+            Integer p = this.positionOfCode.get(Catalogue.lowerAscii(code));
+            if (p != null) count += this.films[p].size();
+        }
+        return count;
+    }
+
+    /**
+     * Return the name of a country
+     *
+     * @author  Dray Raphael
+     * @param code The code of the country, as written in the table films
+     * @return The name of the country, null if the code is unknown
+     */
+    public String nom(final String code) {
+        if (code == null) return null;
+        Integer p = this.positionOfCode.get(Catalogue.lowerAscii(code));
+        return p == null ? null : this.noms[p];
+    }
+}
@@ -0,0 +1,54 @@
+import java.io.File;
+
+/**
+ * Watch the size and the modification date of a SQLite Database file,
+ * so that the caches built over its content know when they must be dropped.
+ * Each change of the file increments the generation returned by getGeneration().
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+public class DatabaseWatcher {
+    /**
+     * Minimum time between two checks of the Database file, in milliseconds
+     */
+    private static final long CHECK_INTERVAL_MS = 1000;
+
+    private final File database;
+    private long length;
+    private long modified;
+    private long lastCheck;
+    private long generation;
+
+    /**
+     * Constructor that records the current state of the file.
+     *
+     * @author  Dray Raphael
+     * @param SQLiteFilename The File *.sqlite which is the SQLite Database
+     */
+    public DatabaseWatcher(final String SQLiteFilename) {
+        this.database = new File(SQLiteFilename);
+        this.length = this.database.length();
+        this.modified = this.database.lastModified();
+        this.lastCheck = System.currentTimeMillis();
+    }
+
+    /**
+     * Return the generation of the Database file, the file being checked at most once every CHECK_INTERVAL_MS
+     * @return A number that changes each time the file has changed
+     * @author Dray Raphael
+     */
+    public synchronized long getGeneration() {
+        long now = System.currentTimeMillis();
+        if (now - this.lastCheck < CHECK_INTERVAL_MS) return this.generation;
+        this.lastCheck = now;
+
+        long length = this.database.length(), modified = this.database.lastModified();
+        if (length != this.length || modified != this.modified) {
+            this.length = length;
+            this.modified = modified;
+            this.generation++;
+        }
+        return this.generation;
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * Simple enum class to implements the differents ways RechercheFilm can execute a request
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+public enum ExecutionMode {
+    /**
+     * One SQL request per keyword, the results are combined in Java as PostingList
+     */
+    POSTING_LISTS,
+    /**
+     * The whole request is compiled by the QueryCompiler in a single SQL statement
+     * which returns all the ids found, then ordered and paginated in Java
+     */
+    COMPILED_SQL,
+    /**
+     * Every keyword is evaluated and every film hydrated by the in-memory Catalogue, without touching SQLite
+     */
+    IN_MEMORY
+}
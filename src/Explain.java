@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Explanation of a search, gathered by RechercheFilm.explique() while the search is executed:
+ * the query tree of the Analyzer, then for each predicate the rows it produced, the time it took
+ * and the SQL statements it executed with their EXPLAIN QUERY PLAN, the films estimated for each group
+ * and the order in which the groups were evaluated and intersected,
+ * and the cost of the pagination and of the hydration of the films.
+ * The explanation is written as a JSON Object, the times being in nanoseconds.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see RechercheFilm#explique(String)
+ * @see StatementTrace
+ */
+public class Explain {
+    private final String requete;
+    private final ExecutionMode mode;
+    private final int offset;
+    private final int limit;
+    private Query query;
+    private String erreur;
+
+    private final List<Predicate> predicates = new ArrayList<>();
+    private Predicate compiled;
+    private long[] groupEstimates = new long[0];
+    private long[] groupRows = new long[0];
+    private int[] intersectionOrder = new int[0];
+    private long intersectionRows;
+    private long total;
+    private int films;
+    private int cachedFilms;
+    private List<StatementTrace.Execution> hydration = new ArrayList<>();
+    private long[] stages = new long[Metrics.Stage.values().length];
+
+    /**
+     * Predicate of the query, or the whole query for the mode COMPILED_SQL
+     */
+    private static final class Predicate {
+        private final int group;
+        private final Request request;
+        private final long estimate;
+        private final long candidates;
+        private final long rows;
+        private final long nanos;
+        private final List<StatementTrace.Execution> statements;
+
+        private Predicate(final int group, final Request request, final long estimate, final long candidates,
+                          final long rows, final long nanos, final List<StatementTrace.Execution> statements) {
+            this.group = group;
+            this.request = request;
+            this.estimate = estimate;
+            this.candidates = candidates;
+            this.rows = rows;
+            this.nanos = nanos;
+            this.statements = statements;
+        }
+    }
+
+    /**
+     * Simple constructor of an empty explanation
+     * @param requete The request as written by the user
+     * @param mode The ExecutionMode of the search
+     * @param offset The offset of the page
+     * @param limit The limit of the page
+     * @author Dray Raphael
+     */
+    Explain(final String requete, final ExecutionMode mode, final int offset, final int limit) {
+        this.requete = requete;
+        this.mode = mode;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    void setQuery(final Query query) {
+        this.query = query;
+        if (query.getError() != null) this.erreur = query.getError();
+    }
+
+    void setErreur(final String erreur) {
+        this.erreur = erreur;
+    }
+
+    /**
+     * Record the evaluation of a request
+     * @param group The group of the request in the query
+     * @param request The request
+     * @param estimate The number of films estimated for the request by the Statistics
+     * @param candidates The number of candidates the request was probed against, -1 if it was evaluated in full
+     * @param rows The number of ids found
+     * @param nanos The time of the evaluation
+     * @param statements The statements executed by the evaluation
+     * @author Dray Raphael
+     */
+    void predicate(final int group, final Request request, final long estimate, final long candidates,
+                   final long rows, final long nanos, final List<StatementTrace.Execution> statements) {
+        this.predicates.add(new Predicate(group, request, estimate, candidates, rows, nanos, statements));
+    }
+
+    void compiled(final long rows, final long nanos, final List<StatementTrace.Execution> statements) {
+        this.compiled = new Predicate(-1, null, -1, -1, rows, nanos, statements);
+    }
+
+    /**
+     * Record the films estimated for each group, the sizes of their unions, and the order in which they were
+     * evaluated and intersected: from the fewest films estimated to the most
+     * @param groupEstimates The number of films estimated for each group
+     * @param groupRows The number of ids of each group, -1 for the groups skipped once the intersection was empty
+     * @param order The groups, in the order they were evaluated
+     * @param rows The number of ids of the intersection
+     * @author Dray Raphael
+     * @see Statistics
+     */
+    void intersection(final long[] groupEstimates, final long[] groupRows, final int[] order, final long rows) {
+        this.groupEstimates = groupEstimates;
+        this.groupRows = groupRows;
+        this.intersectionOrder = order;
+        this.intersectionRows = rows;
+    }
+
+    void total(final long total) {
+        this.total = total;
+    }
+
+    void hydration(final int films, final int cachedFilms, final List<StatementTrace.Execution> statements) {
+        this.films = films;
+        this.cachedFilms = cachedFilms;
+        this.hydration = statements;
+    }
+
+    void setStages(final long[] stages) {
+        this.stages = stages;
+    }
+
+    /**
+     * Ask SQLite the plan of every statement executed by the search
+     * @param connection The connection of the search
+     * @author Dray Raphael
+     * @see StatementTrace.Execution#explainPlan(Connection)
+     */
+    void explainPlans(final Connection connection) {
+        for (Predicate predicate : this.predicates)
+            for (StatementTrace.Execution execution : predicate.statements) execution.explainPlan(connection);
+        if (this.compiled != null)
+            for (StatementTrace.Execution execution : this.compiled.statements) execution.explainPlan(connection);
+        for (StatementTrace.Execution execution : this.hydration) execution.explainPlan(connection);
+    }
+
+    /**
+     * Write the explanation as a JSON Object
+     * @param json The writer of the JSON
+     * @throws IOException If the writer fails
+     * @author Dray Raphael
+     * @see JsonWriter
+     */
+    public void writeJson(final JsonWriter json) throws IOException {
+        json.beginObject();
+        json.name("requete").value(this.requete);
+        json.name("mode").value(this.mode.name());
+        json.name("offset").value(this.offset);
+        json.name("limit").value(this.limit);
+        if (this.erreur != null) json.name("erreur").value(this.erreur);
+
+        json.name("query").beginArray();
+        if (this.query != null) {
+            for (List<Request> group : this.query.getGroups()) {
+                json.beginArray();
+                for (Request request : group) writeRequest(json, request);
+                json.endArray();
+            }
+        }
+        json.endArray();
+
+        json.name("predicates").beginArray();
+        for (Predicate predicate : this.predicates) {
+            json.beginObject();
+            json.name("group").value(predicate.group);
+            json.name("keyword").value(predicate.request.getKeyWord().getName());
+            json.name("value").value(predicate.request.getValue());
+            json.name("estimate").value(predicate.estimate);
+            if (predicate.candidates >= 0) json.name("candidates").value(predicate.candidates);
+            writeCost(json, predicate);
+            json.endObject();
+        }
+        json.endArray();
+
+        if (this.compiled != null) {
+            json.name("compiled").beginObject();
+            writeCost(json, this.compiled);
+            json.endObject();
+        }
+
+        json.name("intersection").beginObject();
+        json.name("groupEstimates").beginArray();
+        for (long estimate : this.groupEstimates) json.value(estimate);
+        json.endArray();
+        json.name("groupRows").beginArray();
+        for (long rows : this.groupRows) json.value(rows);
+        json.endArray();
+        json.name("order").beginArray();
+        for (int group : this.intersectionOrder) json.value(group);
+        json.endArray();
+        json.name("rows").value(this.intersectionRows);
+        json.endObject();
+
+        json.name("hydration").beginObject();
+        json.name("films").value(this.films);
+        json.name("cached").value(this.cachedFilms);
+        writeStatements(json, this.hydration);
+        json.endObject();
+
+        json.name("total").value(this.total);
+        json.name("stages").beginObject();
+        for (Metrics.Stage stage : Metrics.Stage.values())
+            json.name(stage.name().toLowerCase()).value(this.stages[stage.ordinal()]);
+        json.endObject();
+        json.endObject();
+    }
+
+    private static void writeRequest(final JsonWriter json, final Request request) throws IOException {
+        json.beginObject();
+        json.name("keyword").value(request.getKeyWord().getName());
+        json.name("value").value(request.getValue());
+        if (request.getCodes() != null) {
+            json.name("codes").beginArray();
+            for (String code : request.getCodes()) json.value(code);
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    private static void writeCost(final JsonWriter json, final Predicate predicate) throws IOException {
+        json.name("rows").value(predicate.rows);
+        json.name("nanos").value(predicate.nanos);
+        writeStatements(json, predicate.statements);
+    }
+
+    private static void writeStatements(final JsonWriter json, final List<StatementTrace.Execution> statements) throws IOException {
+        json.name("statements").beginArray();
+        for (StatementTrace.Execution execution : statements) {
+            json.beginObject();
+            json.name("sql").value(execution.getSql());
+            json.name("parameters").beginArray();
+            for (Object parameter : execution.getParameters()) {
+                if (parameter == null) json.nullValue();
+                else if (parameter instanceof Number) json.value(((Number) parameter).longValue());
+                else json.value(parameter.toString());
+            }
+            json.endArray();
+            json.name("executions").value(execution.getExecutions());
+            json.name("rows").value(execution.getRows());
+            json.name("nanos").value(execution.getNanos());
+            json.name("plan").beginArray();
+            for (String line : execution.getPlan()) json.value(line);
+            json.endArray();
+            json.endObject();
+        }
+        json.endArray();
+    }
+}
@@ -0,0 +1,294 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the hydrated films, keyed by id_film and shared by all the searches,
+ * so that a film found by many requests is built from the Database only once.
+ * <p>
+ * The cache is bounded by an estimation of the memory used by the films it keeps.
+ * With the LRU policy the least recently used film is evicted.
+ * With the TINY_LFU policy the films enter a small LRU window, and a film leaving the window
+ * only replaces the least recently used film of the main space if it has been asked for more often,
+ * the frequencies being estimated by a count-min sketch which is halved periodically.
+ * The whole cache is dropped when the Database file changes.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+public class FilmCache {
+    /**
+     * Eviction policy of the cache
+     */
+    public enum Policy {
+        /**
+         * Evict the least recently used film
+         */
+        LRU,
+        /**
+         * Admit a film in the main space only if it is more frequent than the film it replaces
+         */
+        TINY_LFU
+    }
+
+    /**
+     * Part of the memory budget given to the window of the TINY_LFU policy, in percent
+     */
+    private static final int WINDOW_PERCENT = 1;
+    /**
+     * Estimation of the memory of an entry of the cache, without its film
+     */
+    private static final int ENTRY_OVERHEAD = 80;
+    /**
+     * Average memory of a hydrated film, used to size the frequency sketch
+     */
+    private static final int AVERAGE_FILM_BYTES = 2048;
+
+    private final Policy policy;
+    private final long maxBytes;
+    private final long windowBytesMax;
+    private final DatabaseWatcher watcher;
+    private final LinkedHashMap<Integer, Entry> window = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<Integer, Entry> main = new LinkedHashMap<>(64, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long windowBytes;
+    private long mainBytes;
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * Constructor of an empty cache.
+     *
+     * @author  Dray Raphael
+     * @param policy The eviction policy
+     * @param maxBytes The memory budget of the cache, in bytes, 0 to disable the cache
+     * @param watcher The watcher of the Database file whose changes invalidate the cache
+     * @see DatabaseWatcher
+     */
+    public FilmCache(final Policy policy, final long maxBytes, final DatabaseWatcher watcher) {
+        this.policy = policy;
+        this.maxBytes = maxBytes;
+        this.windowBytesMax = policy == Policy.LRU ? maxBytes : Math.max(maxBytes * WINDOW_PERCENT / 100, 1);
+        this.watcher = watcher;
+        this.sketch = policy == Policy.LRU ? null
+                : new FrequencySketch((int) Math.min(Math.max(maxBytes / AVERAGE_FILM_BYTES, 64), 1 << 24));
+        this.generation = watcher.getGeneration();
+    }
+
+    /**
+     * Return the cached film of an id
+     * @param id The id_film
+     * @return The film, null if it is not in the cache
+     * @author Dray Raphael
+     */
+    public synchronized InfoFilm get(final int id) {
+        if (this.maxBytes == 0) return null;
+        long generation = this.watcher.getGeneration();
+        if (generation != this.generation) {
+            this.generation = generation;
+            clear();
+        }
+        if (this.sketch != null) this.sketch.increment(id);
+
+        Entry entry = this.window.get(id);
+        if (entry == null) entry = this.main.get(id);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        return entry.film;
+    }
+
+    /**
+     * Keep a hydrated film, evicting films according to the policy if the budget is exceeded
+     * @param id The id_film
+     * @param film The film
+     * @param bytes The estimated memory of the film
+     * @author Dray Raphael
+     */
+    public synchronized void put(final int id, final InfoFilm film, final int bytes) {
+        int weight = bytes + ENTRY_OVERHEAD;
+        long largest = this.policy == Policy.LRU ? this.maxBytes : this.maxBytes - this.windowBytesMax;
+        if (this.maxBytes == 0 || weight > largest) return;
+        if (this.window.containsKey(id) || this.main.containsKey(id)) return;
+
+        this.window.put(id, new Entry(id, film, weight));
+        this.windowBytes += weight;
+
+        Iterator<Map.Entry<Integer, Entry>> eldest = this.window.entrySet().iterator();
+        while (this.windowBytes > this.windowBytesMax) {
+            Entry candidate = eldest.next().getValue();
+            eldest.remove();
+            this.windowBytes -= candidate.weight;
+            if (this.policy == Policy.LRU) this.evictions++;
+            else admit(candidate);
+        }
+    }
+
+    /**
+     * Remove all the films of the cache
+     * @author Dray Raphael
+     */
+    public synchronized void clear() {
+        this.window.clear();
+        this.main.clear();
+        this.windowBytes = 0;
+        this.mainBytes = 0;
+    }
+
+    /**
+     * @return The eviction policy of the cache
+     */
+    public Policy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * @return The number of films found in the cache
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return The number of films that were not in the cache
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * @return The part of the films found in the cache, between 0 and 1
+     */
+    public synchronized double getHitRate() {
+        long requests = this.hits + this.misses;
+        return requests == 0 ? 0 : (double) this.hits / requests;
+    }
+
+    /**
+     * @return The number of films removed from the cache to respect the budget
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * @return The number of films leaving the window that were not admitted in the main space
+     */
+    public synchronized long getRejections() {
+        return this.rejections;
+    }
+
+    /**
+     * @return The estimated memory of the films kept, in bytes
+     */
+    public synchronized long getBytes() {
+        return this.windowBytes + this.mainBytes;
+    }
+
+    /**
+     * @return The number of films in the cache
+     */
+    public synchronized int size() {
+        return this.window.size() + this.main.size();
+    }
+
+    /**
+     * Move a film leaving the window to the main space,
+     * if it is more frequent than the least recently used film of the main space
+     * @param candidate The film leaving the window
+     */
+    private void admit(final Entry candidate) {
+        long mainBytesMax = this.maxBytes - this.windowBytesMax;
+        int frequency = this.sketch.frequency(candidate.id);
+
+        Iterator<Map.Entry<Integer, Entry>> eldest = this.main.entrySet().iterator();
+        if (this.mainBytes + candidate.weight > mainBytesMax
+            && (!eldest.hasNext() || this.sketch.frequency(eldest.next().getKey()) >= frequency)) {
+            this.rejections++;
+            return;
+        }
+
+        eldest = this.main.entrySet().iterator();
+        while (this.mainBytes + candidate.weight > mainBytesMax) {
+            Entry victim = eldest.next().getValue();
+            eldest.remove();
+            this.mainBytes -= victim.weight;
+            this.evictions++;
+        }
+
+        this.main.put(candidate.id, candidate);
+        this.mainBytes += candidate.weight;
+    }
+
+    /**
+     * A film of the cache with its estimated memory
+     */
+    private static final class Entry {
+        private final int id;
+        private final InfoFilm film;
+        private final int weight;
+
+        private Entry(final int id, final InfoFilm film, final int weight) {
+            this.id = id;
+            this.film = film;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Count-min sketch of the frequencies of the ids, with 4 rows of counters saturating at 15.
+     * All the counters are halved after a number of increments proportional to the width,
+     * so that the films popular a long time ago do not stay in the cache forever.
+     */
+    private static final class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = { 0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F };
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int resetThreshold;
+        private int increments;
+
+        private FrequencySketch(final int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(expectedEntries - 1, 1)) << 1;
+            this.counters = new byte[ROWS][width];
+            this.mask = width - 1;
+            this.resetThreshold = width * 10;
+        }
+
+        private void increment(final int id) {
+            boolean added = false;
+            for (int row = 0; row < ROWS; ++row) {
+                int index = index(id, row);
+                if (this.counters[row][index] < MAX_COUNT) {
+                    this.counters[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++this.increments >= this.resetThreshold) {
+                for (byte[] row : this.counters)
+                    for (int i = 0; i < row.length; ++i) row[i] >>= 1;
+                this.increments /= 2;
+            }
+        }
+
+        private int frequency(final int id) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < ROWS; ++row)
+                frequency = Math.min(frequency, this.counters[row][index(id, row)]);
+            return frequency;
+        }
+
+        private int index(final int id, final int row) {
+            int h = id * SEEDS[row];
+            return (h ^ (h >>> 16)) & this.mask;
+        }
+    }
+}
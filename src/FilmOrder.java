@@ -0,0 +1,175 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Rank of every film in the order of InfoFilm.compareTo (titre, then annee, then the name of the pays),
+ * so that a page of results can be selected without hydrating the films.
+ * <p>
+ * The ranks are computed once over the whole catalogue, then page() only compares ints:
+ * a bounded max-heap keeps the offset + limit best films of a result, which is sorted at the end.
+ * The order is immutable, so it can be shared between threads.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see InfoFilm
+ */
+public class FilmOrder {
+    private static final String SQL_SORT_KEYS = "SELECT f.id_film, f.titre, f.annee, p.nom " +
+                                                "FROM films f " +
+                                                "LEFT JOIN pays p ON p.code = f.pays";
+    /**
+     * Rank of the films that are not in the order, which come last, by id_film
+     */
+    private static final int UNRANKED = Integer.MAX_VALUE;
+
+    private final int[] rankOfId;
+    private final long generation;
+
+    /**
+     * Constructor that ranks the films whose sort keys are given in parameter.
+     * The arrays are indexed by the same position, the films with equal keys are ranked by id_film.
+     *
+     * @author  Dray Raphael
+     * @param ids The id_film of the films
+     * @param titres The titles of the films
+     * @param annees The release dates of the films
+     * @param pays The names of the country of the films, or null
+     * @param generation The generation of the Database file the keys were read from
+     * @see DatabaseWatcher
+     */
+    public FilmOrder(final int[] ids, final String[] titres, final int[] annees, final String[] pays, final long generation) {
+        Integer[] positions = new Integer[ids.length];
+        int maxId = -1;
+        for (int i = 0; i < ids.length; ++i) {
+            positions[i] = i;
+            maxId = Math.max(maxId, ids[i]);
+        }
+
+        Comparator<String> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+        Arrays.sort(positions, (a, b) -> {
+            int cmp = nullsFirst.compare(titres[a], titres[b]);
+            if (cmp == 0) cmp = Integer.compare(annees[a], annees[b]);
+            if (cmp == 0) cmp = nullsFirst.compare(pays[a], pays[b]);
+            if (cmp == 0) cmp = Integer.compare(ids[a], ids[b]);
+            return cmp;
+        });
+
+        this.rankOfId = new int[maxId + 1];
+        Arrays.fill(this.rankOfId, UNRANKED);
+        for (int rank = 0; rank < positions.length; ++rank) {
+            int id = ids[positions[rank]];
+            if (id >= 0) this.rankOfId[id] = rank;
+        }
+        this.generation = generation;
+    }
+
+    /**
+     * Read the sort keys of all the films of the Database and rank them.
+     *
+     * @author  Dray Raphael
+     * @param connection The connection to the Database
+     * @param generation The generation of the Database file
+     * @return The order of the films
+     * @throws SQLException If the films cannot be read
+     * @see DatabaseWatcher
+     */
+    public static FilmOrder load(final Connection connection, final long generation) throws SQLException {
+        int count;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT count(*) FROM films")) {
+            count = rs.getInt(1);
+        }
+
+        int[] ids = new int[count], annees = new int[count];
+        String[] titres = new String[count], pays = new String[count];
+        int n = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SQL_SORT_KEYS)) {
+            while (rs.next() && n < count) {
+                ids[n] = rs.getInt(1);
+                titres[n] = rs.getString(2);
+                annees[n] = rs.getInt(3);
+                pays[n] = rs.getString(4);
+                n++;
+            }
+        }
+
+        return new FilmOrder(Arrays.copyOf(ids, n), Arrays.copyOf(titres, n), Arrays.copyOf(annees, n),
+                             Arrays.copyOf(pays, n), generation);
+    }
+
+    /**
+     * @return The generation of the Database file the order was built from
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Select a page of films, in the order of InfoFilm.compareTo
+     *
+     * @author  Dray Raphael
+     * @param ids The films to order
+     * @param offset The number of films to skip
+     * @param limit The maximum number of films returned
+     * @return The id_film of the page, in order
+     */
+    public int[] page(final PostingList ids, final int offset, final int limit) {
+        int n = ids.size();
+        if (offset >= n || limit <= 0) return new int[0];
+        int k = (int) Math.min((long) offset + limit, n);
+
+        // Max-heap of the k best keys seen so far, a key being the rank then the id_film
+        long[] heap = new long[k];
+        int size = 0;
+        for (int i = 0; i < n; ++i) {
+            long key = key(ids.get(i));
+            if (size < k) {
+                heap[size] = key;
+                siftUp(heap, size++);
+            } else if (key < heap[0]) {
+                heap[0] = key;
+                siftDown(heap, k);
+            }
+        }
+
+        Arrays.sort(heap, 0, size);
+        int[] page = new int[size - offset];
+        for (int i = offset; i < size; ++i) page[i - offset] = (int) heap[i];
+        return page;
+    }
+
+    private long key(final int id) {
+        int rank = id >= 0 && id < this.rankOfId.length ? this.rankOfId[id] : UNRANKED;
+        return ((long) rank << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static void siftUp(final long[] heap, int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= key) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private static void siftDown(final long[] heap, final int size) {
+        long key = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] > heap[child]) child++;
+            if (heap[child] <= key) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of positive values, like latencies in nanoseconds, recorded without lock by concurrent searches.
+ * The values are counted in log-linear buckets: each power of two is divided in SUB_BUCKETS buckets,
+ * so that a percentile is known within 1/SUB_BUCKETS of its value whatever its magnitude,
+ * with a fixed memory of BUCKETS counters.
+ * The percentiles are read without stopping the recording, they may miss the values being recorded.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see Metrics
+ */
+public class Histogram implements HistogramMXBean {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value, the negative values being counted as 0
+     * @param value The value
+     * @author Dray Raphael
+     */
+    public void record(final long value) {
+        long v = Math.max(value, 0);
+        this.counts.incrementAndGet(index(v));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(v);
+        long m;
+        while (v > (m = this.max.get()) && !this.max.compareAndSet(m, v)) ;
+    }
+
+    /**
+     * Record the time elapsed since a start given by System.nanoTime()
+     * @param start The start, in nanoseconds
+     * @return The end, so that the next stage can start from it
+     * @author Dray Raphael
+     */
+    public long recordSince(final long start) {
+        long end = System.nanoTime();
+        record(end - start);
+        return end;
+    }
+
+    /**
+     * Value under which a fraction of the values recorded are
+     * @param quantile The fraction, between 0 and 1
+     * @return The upper bound of the bucket of the quantile, 0 if nothing was recorded
+     * @author Dray Raphael
+     */
+    public long getPercentile(final double quantile) {
+        long total = this.count.get();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += this.counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), this.max.get());
+        }
+        return this.max.get();
+    }
+
+    @Override
+    public long getCount() {
+        return this.count.get();
+    }
+
+    @Override
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    @Override
+    public long getMax() {
+        return this.max.get();
+    }
+
+    @Override
+    public long getP50() {
+        return getPercentile(0.5);
+    }
+
+    @Override
+    public long getP99() {
+        return getPercentile(0.99);
+    }
+
+    @Override
+    public long getP999() {
+        return getPercentile(0.999);
+    }
+
+    /**
+     * Bucket of a value: the values below SUB_BUCKETS have their own bucket,
+     * the others are counted in the SUB_BUCKETS buckets of their power of two
+     */
+    private static int index(final long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Greatest value counted in a bucket
+     */
+    private static long upperBound(final int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Management interface of a Histogram, registered in the platform MBeanServer by Metrics.
+ * The values are in the unit of the Histogram: nanoseconds for the latencies, films for the sizes of the results.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see Histogram
+ * @see Metrics
+ */
+public interface HistogramMXBean {
+    /**
+     * @return The number of values recorded
+     */
+    long getCount();
+
+    /**
+     * @return The sum of the values recorded
+     */
+    long getSum();
+
+    /**
+     * @return The greatest value recorded
+     */
+    long getMax();
+
+    /**
+     * @return The median of the values recorded
+     */
+    long getP50();
+
+    /**
+     * @return The 99th percentile of the values recorded
+     */
+    long getP99();
+
+    /**
+     * @return The 99.9th percentile of the values recorded
+     */
+    long getP999();
+}
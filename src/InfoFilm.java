@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 
@@ -72,56 +75,51 @@ public class InfoFilm implements Comparable<InfoFilm> {
      */
     @Override
     public String toString() {
-        boolean debut = true;
-        StringBuilder sb = new StringBuilder();
-        sb.append("{\"titre\":\"").append(_titre.replace("\"", "\\\"")).append("\",");
-        sb.append("\"realisateurs\":[");
+        StringWriter sw = new StringWriter();
+        try {
+            JsonWriter json = new JsonWriter(sw);
+            writeJson(json);
+            json.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sw.toString();
+    }
+
+    /**
+     *   Write like a JSON Object informations over a film, in the same format than toString().
+     *
+     *   @param json The encoder receiving the object
+     *   @throws IOException If the Writer of the encoder fails
+     */
+    public void writeJson(JsonWriter json) throws IOException {
+        json.beginObject();
+        json.name("titre").value(_titre);
+        json.name("realisateurs").beginArray();
         for (NomPersonne nom: _realisateurs) {
-           if (debut) {
-             debut = false;
-           } else {
-             sb.append(',');
-           }
-           sb.append("\"").append(nom.toString().replace("\"", "\\\"")).append("\"");
+           json.value(nom.toString());
         }
-        sb.append("],\"acteurs\":[");
-        debut = true;
+        json.endArray();
+        json.name("acteurs").beginArray();
         for (NomPersonne nom: _acteurs) {
-           if (debut) {
-             debut = false;
-           } else {
-             sb.append(',');
-           }
-           sb.append("\"").append(nom.toString().replace("\"", "\\\"")).append("\"");
+           json.value(nom.toString());
         }
-        sb.append("],\"pays\":\"");
-        sb.append(_pays.replace("\"", "\\\""));
-        sb.append("\",\"annee\":");
-        sb.append(_annee);
-        sb.append(",\"duree\":");
+        json.endArray();
+        json.name("pays").value(_pays);
+        json.name("annee").value(_annee);
+        json.name("duree");
         if (_duree > 0) {
-          sb.append('"');
           int h = _duree / 60;
-          sb.append(h).append("h");
           int mn = _duree % 60;
-          if (mn > 0) {
-            sb.append(mn).append("mn");
-          }
-          sb.append('"');
+          json.value(mn > 0 ? h + "h" + mn + "mn" : h + "h");
         } else {
-          sb.append("null");
+          json.nullValue();
         }
-        sb.append(",\"autres titres\":[");
-        debut = true;
+        json.name("autres titres").beginArray();
         for (String titre: _autres_titres) {
-           if (debut) {
-             debut = false;
-           } else {
-             sb.append(',');
-           }
-           sb.append("\"").append(titre.replace("\"", "\\\"")).append("\"");
+           json.value(titre);
         }
-        sb.append("]}");
-        return sb.toString();
+        json.endArray();
+        json.endObject();
     }
 }
@@ -0,0 +1,292 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming JSON encoder writing straight to a Writer, so that a response never has to be built as one String.
+ * <p>
+ * The characters are gathered in a buffer that is reused by the following encoders of the same thread,
+ * the separators between the members and the elements are written automatically,
+ * and the strings are escaped following RFC 8259.
+ * finish() must be called once the document is complete, to flush the buffer and give it back.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+public class JsonWriter {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_DEPTH = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final char LINE_SEPARATOR = (char) 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = (char) 0x2029;
+    /**
+     * Buffer of the last encoder finished by each thread, taken by the next one
+     */
+    private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<>();
+
+    private final Writer out;
+    private char[] buffer;
+    private int position;
+    /**
+     * For each open object or array, whether it already has a member or an element
+     */
+    private final boolean[] nonEmpty = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    /**
+     * Constructor of an encoder writing to the Writer given in parameter.
+     *
+     * @author  Dray Raphael
+     * @param out The Writer receiving the document, neither flushed nor closed before finish()
+     * @see Writer
+     */
+    public JsonWriter(final Writer out) {
+        this.out = out;
+        char[] buffer = BUFFERS.get();
+        if (buffer == null) buffer = new char[BUFFER_SIZE];
+        else BUFFERS.set(null);
+        this.buffer = buffer;
+    }
+
+    /**
+     * Open an object
+     * @return This encoder
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    /**
+     * Close the current object
+     * @return This encoder
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    /**
+     * Open an array
+     * @return This encoder
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    /**
+     * Close the current array
+     * @return This encoder
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Write the name of the next member of the current object
+     * @param name The name of the member
+     * @return This encoder
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public JsonWriter name(final String name) throws IOException {
+        separator();
+        string(name);
+        write(':');
+        this.afterName = true;
+        return this;
+    }
+
+    /**
+     * Write a string value, or null
+     * @param value The value
+     * @return This encoder
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public JsonWriter value(final String value) throws IOException {
+        if (value == null) return nullValue();
+        separator();
+        string(value);
+        return this;
+    }
+
+    /**
+     * Write a number value
+     * @param value The value
+     * @return This encoder
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public JsonWriter value(final long value) throws IOException {
+        separator();
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value));
+            return this;
+        }
+
+        long v = value;
+        if (v < 0) {
+            write('-');
+            v = -v;
+        }
+        reserve(19);
+        int start = this.position;
+        do {
+            this.buffer[this.position++] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = this.position - 1; i < j; ++i, --j) {
+            char c = this.buffer[i];
+            this.buffer[i] = this.buffer[j];
+            this.buffer[j] = c;
+        }
+        return this;
+    }
+
+    /**
+     * Write a boolean value
+     * @param value The value
+     * @return This encoder
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public JsonWriter value(final boolean value) throws IOException {
+        separator();
+        write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Write a null value
+     * @return This encoder
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public JsonWriter nullValue() throws IOException {
+        separator();
+        write("null");
+        return this;
+    }
+
+    /**
+     * Write the buffered characters and flush the Writer, then give the buffer back to the thread.
+     * The encoder must not be used anymore
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public void finish() throws IOException {
+        try {
+            drain();
+            this.out.flush();
+        } finally {
+            BUFFERS.set(this.buffer);
+            this.buffer = null;
+        }
+    }
+
+    private JsonWriter open(final char bracket) throws IOException {
+        if (this.depth == MAX_DEPTH) throw new IllegalStateException("JSON nested deeper than " + MAX_DEPTH);
+        separator();
+        write(bracket);
+        this.nonEmpty[this.depth++] = false;
+        return this;
+    }
+
+    private JsonWriter close(final char bracket) throws IOException {
+        if (this.depth == 0) throw new IllegalStateException("No JSON object or array to close");
+        this.depth--;
+        write(bracket);
+        return this;
+    }
+
+    /**
+     * Write the comma preceding a member or an element, unless it follows a name or is the first one
+     */
+    private void separator() throws IOException {
+        if (this.afterName) {
+            this.afterName = false;
+            return;
+        }
+        if (this.depth == 0) return;
+        if (this.nonEmpty[this.depth - 1]) write(',');
+        else this.nonEmpty[this.depth - 1] = true;
+    }
+
+    /**
+     * Write a quoted string, escaping the quotes, the backslashes, the control characters
+     * and the line separators that JavaScript does not accept in a string
+     */
+    private void string(final String s) throws IOException {
+        write('"');
+        for (int i = 0, n = s.length(); i < n; ++i) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != LINE_SEPARATOR && c != PARAGRAPH_SEPARATOR) {
+                if (this.position == this.buffer.length) drain();
+                this.buffer[this.position++] = c;
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    write("\\\"");
+                    break;
+                case '\\':
+                    write("\\\\");
+                    break;
+                case '\n':
+                    write("\\n");
+                    break;
+                case '\r':
+                    write("\\r");
+                    break;
+                case '\t':
+                    write("\\t");
+                    break;
+                case '\b':
+                    write("\\b");
+                    break;
+                case '\f':
+                    write("\\f");
+                    break;
+                default:
+                    reserve(6);
+                    this.buffer[this.position++] = '\\';
+                    this.buffer[this.position++] = 'u';
+                    this.buffer[this.position++] = HEX[(c >> 12) & 0xF];
+                    this.buffer[this.position++] = HEX[(c >> 8) & 0xF];
+                    this.buffer[this.position++] = HEX[(c >> 4) & 0xF];
+                    this.buffer[this.position++] = HEX[c & 0xF];
+            }
+        }
+        write('"');
+    }
+
+    private void write(final char c) throws IOException {
+        if (this.position == this.buffer.length) drain();
+        this.buffer[this.position++] = c;
+    }
+
+    private void write(final String s) throws IOException {
+        reserve(s.length());
+        s.getChars(0, s.length(), this.buffer, this.position);
+        this.position += s.length();
+    }
+
+    /**
+     * Make room in the buffer for count characters, count being at most the size of the buffer
+     */
+    private void reserve(final int count) throws IOException {
+        if (this.buffer.length - this.position < count) drain();
+    }
+
+    private void drain() throws IOException {
+        this.out.write(this.buffer, 0, this.position);
+        this.position = 0;
+    }
+}
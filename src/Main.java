@@ -1,7 +1,27 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
 public class Main {
-    public static void main(String[] args) {
+    /**
+     * Without arguments, print the films of Hitchcock.
+     * With --server [port] [database], serve the searches over HTTP until the JVM is stopped
+     * @param args The arguments of the command line
+     * @throws IOException If the port cannot be bound
+     * @see SearchServer
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            String database = args.length > 2 ? args[2] : "SQLiteSample/bdfilm.sqlite";
+            SearchServer server = new SearchServer(new RechercheFilm(database), new InetSocketAddress(port),
+                                                   Runtime.getRuntime().availableProcessors() * 16);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(5), "SearchServer-shutdown"));
+            server.start();
+            return;
+        }
+
         RechercheFilm rF = new RechercheFilm("SQLiteSample/bdfilm.sqlite");
         System.out.print(rF.retrouve("DE Hitchcock"));
         rF.fermeBase();
     }
-}
\ No newline at end of file
+}
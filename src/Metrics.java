@@ -0,0 +1,304 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Instrumentation of the searches of a RechercheFilm:
+ * a latency Histogram per Stage of retrouve() and per KeyWord predicate, the number of requests of each KeyWord,
+ * the sizes of the results, and the statistics of the caches and of the pool of connections, read when they are exported.
+ * The metrics are exported through JMX MBeans, under the domain "RechercheFilm",
+ * and as a plain text dump in the Prometheus text format.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see Histogram
+ * @see RechercheFilm
+ */
+public class Metrics implements MetricsMXBean {
+    /**
+     * The stages of retrouve(), each one timed by its own Histogram.
+     * INTERSECTION is the time of the unions and the intersections of the results of the requests,
+     * which is not counted in PREDICATE.
+     * For the COMPILED_SQL mode, the whole compiled statement is timed as a single PREDICATE
+     */
+    public enum Stage {
+        PARSE, PREDICATE, INTERSECTION, PAGINATION, HYDRATION, SERIALIZATION, RETROUVE;
+
+        private String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(Metrics.class.getName());
+    private static final String DOMAIN = "RechercheFilm";
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+    private static final KeyWord[] KEYWORDS = KeyWord.values();
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final RechercheFilm owner;
+    private final EnumMap<Stage, Histogram> stages = new EnumMap<>(Stage.class);
+    private final EnumMap<KeyWord, Histogram> keyWords = new EnumMap<>(KeyWord.class);
+    private final AtomicLongArray keyWordCounts = new AtomicLongArray(KEYWORDS.length);
+    private final Histogram results = new Histogram();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    /**
+     * Simple constructor, the metrics are not registered in JMX until register() is called
+     * @param owner The RechercheFilm whose caches and pool are exported
+     * @author Dray Raphael
+     */
+    Metrics(final RechercheFilm owner) {
+        this.owner = owner;
+        for (Stage stage : Stage.values()) this.stages.put(stage, new Histogram());
+        for (KeyWord keyWord : KEYWORDS) this.keyWords.put(keyWord, new Histogram());
+    }
+
+    /**
+     * @param stage A stage of retrouve()
+     * @return The Histogram of its latencies, in nanoseconds
+     */
+    public Histogram getStage(final Stage stage) {
+        return this.stages.get(stage);
+    }
+
+    /**
+     * @param keyWord A KeyWord
+     * @return The Histogram of the latencies of its predicates, in nanoseconds
+     */
+    public Histogram getKeyWord(final KeyWord keyWord) {
+        return this.keyWords.get(keyWord);
+    }
+
+    /**
+     * @return The Histogram of the number of films found by the requests
+     */
+    public Histogram getResults() {
+        return this.results;
+    }
+
+    /**
+     * Count a call to retrouve()
+     * @author Dray Raphael
+     */
+    void countRequest() {
+        this.requests.incrementAndGet();
+    }
+
+    /**
+     * Count a request refused with an error
+     * @author Dray Raphael
+     */
+    void countError() {
+        this.errors.incrementAndGet();
+    }
+
+    /**
+     * Count the requests of each KeyWord of a Query
+     * @param query The Query of a call to retrouve()
+     * @author Dray Raphael
+     */
+    void countKeyWords(final Query query) {
+        for (List<Request> group : query.getGroups())
+            for (Request request : group)
+                this.keyWordCounts.incrementAndGet(request.getKeyWord().ordinal());
+    }
+
+    @Override
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    @Override
+    public long getErrors() {
+        return this.errors.get();
+    }
+
+    @Override
+    public Map<String, Long> getKeyWordCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (KeyWord keyWord : KEYWORDS) counts.put(keyWord.getName(), this.keyWordCounts.get(keyWord.ordinal()));
+        return counts;
+    }
+
+    @Override
+    public double getQueryCacheHitRate() {
+        QueryCache queryCache = this.owner.getQueryCache();
+        long lookups = queryCache.getHits() + queryCache.getMisses();
+        return lookups == 0 ? 0 : (double) queryCache.getHits() / lookups;
+    }
+
+    @Override
+    public double getFilmCacheHitRate() {
+        return this.owner.getFilmCache().getHitRate();
+    }
+
+    @Override
+    public String getText() {
+        StringWriter out = new StringWriter();
+        try {
+            writeText(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write all the metrics in the Prometheus text format: the latencies in seconds, as summaries
+     * with the quantiles 0.5, 0.99 and 0.999, then the counters and the gauges
+     * @param out The Writer receiving the text, which is not flushed
+     * @throws IOException If the Writer fails
+     * @author Dray Raphael
+     */
+    public void writeText(final Writer out) throws IOException {
+        out.write("# TYPE recherche_film_requests_total counter\n");
+        sample(out, "recherche_film_requests_total", null, this.requests.get());
+        out.write("# TYPE recherche_film_errors_total counter\n");
+        sample(out, "recherche_film_errors_total", null, this.errors.get());
+
+        out.write("# TYPE recherche_film_stage_seconds summary\n");
+        for (Stage stage : Stage.values())
+            summary(out, "recherche_film_stage_seconds", "stage=\"" + stage.label() + "\"", this.stages.get(stage), NANOS_PER_SECOND);
+
+        out.write("# TYPE recherche_film_keyword_requests_total counter\n");
+        for (KeyWord keyWord : KEYWORDS)
+            sample(out, "recherche_film_keyword_requests_total", keyWordLabel(keyWord), this.keyWordCounts.get(keyWord.ordinal()));
+        out.write("# TYPE recherche_film_keyword_seconds summary\n");
+        for (KeyWord keyWord : KEYWORDS)
+            summary(out, "recherche_film_keyword_seconds", keyWordLabel(keyWord), this.keyWords.get(keyWord), NANOS_PER_SECOND);
+
+        out.write("# TYPE recherche_film_result_films summary\n");
+        summary(out, "recherche_film_result_films", null, this.results, 1);
+
+        QueryCache queryCache = this.owner.getQueryCache();
+        out.write("# TYPE recherche_film_query_cache_hits_total counter\n");
+        sample(out, "recherche_film_query_cache_hits_total", null, queryCache.getHits());
+        out.write("# TYPE recherche_film_query_cache_misses_total counter\n");
+        sample(out, "recherche_film_query_cache_misses_total", null, queryCache.getMisses());
+        out.write("# TYPE recherche_film_query_cache_evictions_total counter\n");
+        sample(out, "recherche_film_query_cache_evictions_total", null, queryCache.getEvictions());
+        out.write("# TYPE recherche_film_query_cache_invalidations_total counter\n");
+        sample(out, "recherche_film_query_cache_invalidations_total", null, queryCache.getInvalidations());
+        out.write("# TYPE recherche_film_query_cache_entries gauge\n");
+        sample(out, "recherche_film_query_cache_entries", null, queryCache.size());
+
+        FilmCache filmCache = this.owner.getFilmCache();
+        out.write("# TYPE recherche_film_film_cache_hits_total counter\n");
+        sample(out, "recherche_film_film_cache_hits_total", null, filmCache.getHits());
+        out.write("# TYPE recherche_film_film_cache_misses_total counter\n");
+        sample(out, "recherche_film_film_cache_misses_total", null, filmCache.getMisses());
+        out.write("# TYPE recherche_film_film_cache_evictions_total counter\n");
+        sample(out, "recherche_film_film_cache_evictions_total", null, filmCache.getEvictions());
+        out.write("# TYPE recherche_film_film_cache_rejections_total counter\n");
+        sample(out, "recherche_film_film_cache_rejections_total", null, filmCache.getRejections());
+        out.write("# TYPE recherche_film_film_cache_bytes gauge\n");
+        sample(out, "recherche_film_film_cache_bytes", null, filmCache.getBytes());
+        out.write("# TYPE recherche_film_film_cache_entries gauge\n");
+        sample(out, "recherche_film_film_cache_entries", null, filmCache.size());
+
+        ConnectionPool pool = this.owner.getConnectionPool();
+        out.write("# TYPE recherche_film_pool_connections_in_use gauge\n");
+        sample(out, "recherche_film_pool_connections_in_use", null, pool.getInUse());
+        out.write("# TYPE recherche_film_pool_acquisitions_total counter\n");
+        sample(out, "recherche_film_pool_acquisitions_total", null, pool.getAcquisitions());
+        out.write("# TYPE recherche_film_pool_waits_total counter\n");
+        sample(out, "recherche_film_pool_waits_total", null, pool.getWaits());
+        out.write("# TYPE recherche_film_pool_wait_seconds_total counter\n");
+        sample(out, "recherche_film_pool_wait_seconds_total", null, pool.getWaitNanos() / NANOS_PER_SECOND);
+        out.write("# TYPE recherche_film_statement_cache_hits_total counter\n");
+        sample(out, "recherche_film_statement_cache_hits_total", null, pool.getStatementHits());
+        out.write("# TYPE recherche_film_statement_compiles_total counter\n");
+        sample(out, "recherche_film_statement_compiles_total", null, pool.getStatementCompiles());
+    }
+
+    /**
+     * Register the MBeans of the metrics in the platform MBeanServer:
+     * the MetricsMXBean, and a HistogramMXBean per Stage, per KeyWord and for the sizes of the results.
+     * The names hold the Database and a number of instance, so that several RechercheFilm can be registered.
+     * A failure is logged, the searches do not depend on JMX
+     * @param database The name of the file of the Database
+     * @author Dray Raphael
+     * @see ManagementFactory
+     */
+    synchronized void register(final String database) {
+        String suffix = ",database=" + ObjectName.quote(database) + ",instance=" + INSTANCES.incrementAndGet();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, "type=Metrics" + suffix, this);
+            register(server, "type=Results" + suffix, this.results);
+            for (Stage stage : Stage.values())
+                register(server, "type=Stage,name=" + stage.label() + suffix, this.stages.get(stage));
+            for (KeyWord keyWord : KEYWORDS)
+                register(server, "type=KeyWord,name=" + keyWord.getName() + suffix, this.keyWords.get(keyWord));
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Metrics cannot be registered in JMX", e);
+        }
+    }
+
+    /**
+     * Unregister the MBeans registered by register()
+     * @author Dray Raphael
+     */
+    synchronized void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : this.registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "MBean " + name + " already unregistered", e);
+            }
+        }
+        this.registered.clear();
+    }
+
+    private void register(final MBeanServer server, final String properties, final Object mbean) throws JMException {
+        ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+        server.registerMBean(mbean, name);
+        this.registered.add(name);
+    }
+
+    private static String keyWordLabel(final KeyWord keyWord) {
+        return "keyword=\"" + keyWord.getName() + "\"";
+    }
+
+    /**
+     * Write the quantiles, the sum and the count of a Histogram
+     * @param unit The value of the Histogram worth one unit of the metric
+     */
+    private static void summary(final Writer out, final String metric, final String labels,
+                                final Histogram histogram, final double unit) throws IOException {
+        String prefix = labels == null ? "" : labels + ",";
+        sample(out, metric, prefix + "quantile=\"0.5\"", histogram.getP50() / unit);
+        sample(out, metric, prefix + "quantile=\"0.99\"", histogram.getP99() / unit);
+        sample(out, metric, prefix + "quantile=\"0.999\"", histogram.getP999() / unit);
+        sample(out, metric + "_sum", labels, histogram.getSum() / unit);
+        sample(out, metric + "_count", labels, histogram.getCount());
+    }
+
+    private static void sample(final Writer out, final String metric, final String labels, final double value) throws IOException {
+        out.write(metric);
+        if (labels != null) out.append('{').append(labels).append('}');
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) out.write(Long.toString((long) value));
+        else out.write(Double.toString(value));
+        out.write('\n');
+    }
+}
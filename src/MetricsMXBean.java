@@ -0,0 +1,42 @@
+import java.util.Map;
+
+/**
+ * Management interface of the Metrics of a RechercheFilm, registered in the platform MBeanServer.
+ * The latencies of the stages and of the keywords are registered as separate HistogramMXBean.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see Metrics
+ * @see HistogramMXBean
+ */
+public interface MetricsMXBean {
+    /**
+     * @return The number of calls to retrouve()
+     */
+    long getRequests();
+
+    /**
+     * @return The number of requests refused with an error
+     */
+    long getErrors();
+
+    /**
+     * @return The number of requests of each KeyWord received, by name of KeyWord
+     */
+    Map<String, Long> getKeyWordCounts();
+
+    /**
+     * @return The fraction of the responses found in the QueryCache
+     */
+    double getQueryCacheHitRate();
+
+    /**
+     * @return The fraction of the films found in the FilmCache
+     */
+    double getFilmCacheHitRate();
+
+    /**
+     * @return All the metrics, in the text format of Metrics.writeText
+     */
+    String getText();
+}
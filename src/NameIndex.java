@@ -0,0 +1,265 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory index of the names of the personnes, answering the keywords DE and AVEC without SQL.
+ * <p>
+ * The names are folded (accents removed, lower case, any other character than a letter or a digit
+ * being a space), so that "DE truffaut" and "AVEC Francois Truffaut" find "François Truffaut".
+ * The folded surname, given name and full name ("prenom nom" and "nom prenom") of each person
+ * are mapped to the positions of the persons, and the films of each person are prebuilt as two PostingList,
+ * one per role of the generique ('R' for DE, 'A' for AVEC):
+ * a name is resolved by a few hash lookups and a union of the posting lists of the role.
+ * The index is immutable, so it can be shared between threads.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see Catalogue
+ * @see QueryCompiler
+ */
+public final class NameIndex {
+    private static final String SQL_PERSONNES = "SELECT id_personne, nom_sans_accent, prenom_sans_accent FROM personnes";
+    private static final String SQL_GENERIQUE = "SELECT id_personne, id_film, role FROM generique ORDER BY id_personne";
+
+    private final int[] personnes;
+    private final PostingList[] realisateurs;
+    private final PostingList[] acteurs;
+    private final HashMap<String, PostingList> noms = new HashMap<>();
+    private final HashMap<String, PostingList> prenoms = new HashMap<>();
+    private final HashMap<String, PostingList> nomsComplets = new HashMap<>();
+    private final long generation;
+
+    /**
+     * Constructor of the index of the persons given in parameter, the arrays being indexed by the same position.
+     *
+     * @author  Dray Raphael
+     * @param personnes The id_personne of the persons
+     * @param noms The surnames of the persons
+     * @param prenoms The given names of the persons, or null
+     * @param realisateurs The films directed by the persons
+     * @param acteurs The films in which the persons act
+     * @param generation The generation of the Database file the persons were read from
+     * @see DatabaseWatcher
+     */
+    public NameIndex(final int[] personnes, final String[] noms, final String[] prenoms,
+                     final PostingList[] realisateurs, final PostingList[] acteurs, final long generation) {
+        this.personnes = personnes;
+        this.realisateurs = realisateurs;
+        this.acteurs = acteurs;
+        this.generation = generation;
+
+        HashMap<String, PostingList.Builder> nomsBuilder = new HashMap<>(), prenomsBuilder = new HashMap<>(),
+                                             completsBuilder = new HashMap<>();
+        for (int p = 0; p < personnes.length; ++p) {
+            String nom = fold(noms[p]);
+            String prenom = prenoms[p] == null ? "" : fold(prenoms[p]);
+            add(nomsBuilder, nom, p);
+            if (prenom.isEmpty()) continue;
+            add(prenomsBuilder, prenom, p);
+            add(completsBuilder, prenom + ' ' + nom, p);
+            add(completsBuilder, nom + ' ' + prenom, p);
+        }
+        build(nomsBuilder, this.noms);
+        build(prenomsBuilder, this.prenoms);
+        build(completsBuilder, this.nomsComplets);
+    }
+
+    /**
+     * Read the names without accents and the films of each role of all the persons of the Database and index them.
+     *
+     * @author  Dray Raphael
+     * @param connection The connection to the Database
+     * @param generation The generation of the Database file
+     * @return The index of the names
+     * @throws SQLException If the persons cannot be read
+     * @see DatabaseWatcher
+     */
+    public static NameIndex load(final Connection connection, final long generation) throws SQLException {
+        ArrayList<Integer> ids = new ArrayList<>();
+        ArrayList<String> noms = new ArrayList<>(), prenoms = new ArrayList<>();
+        HashMap<Integer, Integer> positionOf = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SQL_PERSONNES)) {
+            while (rs.next()) {
+                positionOf.put(rs.getInt(1), ids.size());
+                ids.add(rs.getInt(1));
+                noms.add(rs.getString(2));
+                prenoms.add(rs.getString(3));
+            }
+        }
+
+        int n = ids.size();
+        PostingList.Builder[] realisateurs = new PostingList.Builder[n], acteurs = new PostingList.Builder[n];
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SQL_GENERIQUE)) {
+            while (rs.next()) {
+                Integer p = positionOf.get(rs.getInt(1));
+                if (p == null) continue;
+                PostingList.Builder[] builders = "R".equals(rs.getString(3)) ? realisateurs
+                                               : "A".equals(rs.getString(3)) ? acteurs : null;
+                if (builders == null) continue;
+                if (builders[p] == null) builders[p] = new PostingList.Builder();
+                builders[p].add(rs.getInt(2));
+            }
+        }
+
+        int[] personnes = new int[n];
+        for (int p = 0; p < n; ++p) personnes[p] = ids.get(p);
+        return new NameIndex(personnes, noms.toArray(new String[0]), prenoms.toArray(new String[0]),
+                             build(realisateurs), build(acteurs), generation);
+    }
+
+    /**
+     * @return The generation of the Database file the index was built from
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * @return The number of persons of the index
+     */
+    public int size() {
+        return this.personnes.length;
+    }
+
+    /**
+     * Return the id_personne of the persons named by the value of a request DE or AVEC, compared once folded:
+     * the surname is the value or its first word, the full name is the value,
+     * or the surname is the second word and the given name the first one.
+     *
+     * @author  Dray Raphael
+     * @param name The value of the request
+     * @return The sorted id_personne of the persons found
+     */
+    public int[] personnes(final String name) {
+        PostingList positions = positions(name);
+        int[] ids = new int[positions.size()];
+        for (int i = 0; i < ids.length; ++i) ids[i] = this.personnes[positions.get(i)];
+        return PostingList.of(ids, ids.length).toArray();
+    }
+
+    /**
+     * Return the films of the persons named by the value of a request, in the role of its KeyWord:
+     * the films they directed for DE, the films they act in for AVEC
+     *
+     * @author  Dray Raphael
+     * @param keyWord The KeyWord of the request, REALISATEUR or ACTEUR
+     * @param name The value of the request
+     * @return The PostingList of all the idx found
+     * @see #personnes(String)
+     */
+    public PostingList films(final KeyWord keyWord, final String name) {
+        PostingList[] films = keyWord == KeyWord.REALISATEUR ? this.realisateurs
+                            : keyWord == KeyWord.ACTEUR ? this.acteurs : null;
+        if (films == null) return PostingList.EMPTY;
+
+        PostingList positions = positions(name);
+        PostingList result = PostingList.EMPTY;
+        for (int i = 0; i < positions.size(); ++i) result = result.union(films[positions.get(i)]);
+        return result;
+    }
+
+    /**
+     * Return the number of films of the persons named by the value of a request, in the role of its KeyWord,
+     * without building them: the films of several persons are counted once per person
+     *
+     * @author  Dray Raphael
+     * @param keyWord The KeyWord of the request, REALISATEUR or ACTEUR
+     * @param name The value of the request
+     * @return The number of films, at least the number of films of films(keyWord, name)
+     * @see Statistics
+     */
+    public long count(final KeyWord keyWord, final String name) {
+        PostingList[] films = keyWord == KeyWord.REALISATEUR ? this.realisateurs
+                            : keyWord == KeyWord.ACTEUR ? this.acteurs : null;
+        if (films == null) return 0;
+
+        PostingList positions = positions(name);
+        long count = 0;
+        for (int i = 0; i < positions.size(); ++i) count += films[positions.get(i)].size();
+        return count;
+    }
+
+    /**
+     * Return the role of the generique of a KeyWord
+     *
+     * @author  Dray Raphael
+     * @param keyWord The KeyWord of the request, REALISATEUR or ACTEUR
+     * @return "R" for DE, "A" for AVEC, null for the other KeyWords
+     */
+    static String role(final KeyWord keyWord) {
+        return keyWord == KeyWord.REALISATEUR ? "R" : keyWord == KeyWord.ACTEUR ? "A" : null;
+    }
+
+    /**
+     * @param name The value of a request DE or AVEC
+     * @return The positions of the persons named by the value
+     */
+    private PostingList positions(final String name) {
+        String value = fold(name);
+        if (value.isEmpty()) return PostingList.EMPTY;
+        int space = value.indexOf(' ');
+        String first = space < 0 ? value : value.substring(0, space);
+
+        PostingList result = get(this.noms, value).union(get(this.nomsComplets, value));
+        if (space >= 0) {
+            int end = value.indexOf(' ', space + 1);
+            String second = value.substring(space + 1, end < 0 ? value.length() : end);
+            result = result.union(get(this.noms, first))
+                           .union(get(this.noms, second).intersect(get(this.prenoms, first)));
+        }
+        return result;
+    }
+
+    /**
+     * Fold a name: the accents are removed, the letters are put in lower case,
+     * and the other characters than the letters and the digits are turned into single spaces
+     *
+     * @author  Dray Raphael
+     * @param name A name
+     * @return The folded name, without leading or trailing space
+     */
+    static String fold(final String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); ++i) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (!Character.isLetterOrDigit(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) sb.append(' ');
+            space = false;
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    private static PostingList[] build(final PostingList.Builder[] builders) {
+        PostingList[] lists = new PostingList[builders.length];
+        for (int p = 0; p < builders.length; ++p) lists[p] = builders[p] == null ? PostingList.EMPTY : builders[p].build();
+        return lists;
+    }
+
+    private static PostingList get(final HashMap<String, PostingList> map, final String key) {
+        return map.getOrDefault(key, PostingList.EMPTY);
+    }
+
+    private static void add(final HashMap<String, PostingList.Builder> map, final String key, final int position) {
+        if (!key.isEmpty()) map.computeIfAbsent(key, k -> new PostingList.Builder()).add(position);
+    }
+
+    private static void build(final HashMap<String, PostingList.Builder> builders, final HashMap<String, PostingList> map) {
+        for (Map.Entry<String, PostingList.Builder> entry : builders.entrySet())
+            map.put(entry.getKey(), entry.getValue().build());
+    }
+}
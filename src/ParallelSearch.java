@@ -0,0 +1,198 @@
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluation of the requests of a Query in parallel, each one on a connection of its own.
+ * The thread of the search evaluates the requests on its connection, while helpers take the idle connections
+ * of the pool without waiting for them and evaluate the other requests: a search never waits for a connection
+ * held by another one, and is evaluated alone when the pool is busy.
+ * The requests are started group by group, from the most selective group to the least selective one,
+ * and the groups are intersected as soon as all their requests are evaluated, in the order they complete,
+ * and the requests not yet started are abandoned as soon as the intersection is empty,
+ * so that a query costs about its slowest request instead of the sum of them.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see ConnectionPool#tryAcquire()
+ * @see PostingList
+ */
+public class ParallelSearch {
+    /**
+     * Evaluation of a request on the statements of a connection
+     */
+    interface Evaluator {
+        PostingList evaluate(StatementCache statements, Request request);
+    }
+
+    private final Evaluator evaluator;
+    private final Request[] requests;
+    private final int[] groupOf;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LinkedBlockingQueue<Object> completed = new LinkedBlockingQueue<>();
+    private volatile boolean cancelled;
+
+    // Folding of the results, by the thread of the search only
+    private final PostingList[] unions;
+    private final int[] pending;
+    private PostingList result;
+    private long intersectionNanos;
+
+    /**
+     * Result of the evaluation of one request
+     */
+    private static final class Done {
+        private final int index;
+        private final PostingList ids;
+
+        private Done(final int index, final PostingList ids) {
+            this.index = index;
+            this.ids = ids;
+        }
+    }
+
+    /**
+     * Simple constructor
+     * @param query The Query produced by the Analyzer
+     * @param order The groups of the query, in the order their requests are started
+     * @param evaluator The evaluation of a request, called concurrently on different connections
+     * @author Dray Raphael
+     * @see Statistics
+     */
+    ParallelSearch(final Query query, final int[] order, final Evaluator evaluator) {
+        this.evaluator = evaluator;
+        List<List<Request>> groups = query.getGroups();
+        int count = 0;
+        for (List<Request> group : groups) count += group.size();
+
+        this.requests = new Request[count];
+        this.groupOf = new int[count];
+        this.unions = new PostingList[groups.size()];
+        this.pending = new int[groups.size()];
+        int i = 0;
+        for (int g : order) {
+            this.unions[g] = PostingList.EMPTY;
+            this.pending[g] = groups.get(g).size();
+            for (Request request : groups.get(g)) {
+                this.requests[i] = request;
+                this.groupOf[i++] = g;
+            }
+        }
+    }
+
+    /**
+     * Evaluate the requests and intersect their groups.
+     * @param statements The statement cache of the connection taken by the search
+     * @param pool The pool in which the helpers take their connection
+     * @param executor The executor of the helpers
+     * @param helpers The maximum number of helpers
+     * @return The PostingList of all the idx found about the Query
+     * @author Dray Raphael
+     */
+    PostingList run(final StatementCache statements, final ConnectionPool pool, final Executor executor, final int helpers) {
+        if (this.requests.length == 0) return PostingList.EMPTY;
+
+        int started = Math.min(helpers, this.requests.length - 1);
+        for (int h = 0; h < started; ++h) {
+            try {
+                executor.execute(() -> help(pool));
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+
+        try {
+            return evaluate(statements);
+        } finally {
+            this.cancelled = true;
+        }
+    }
+
+    /**
+     * Work of the thread of the search: evaluate the requests not yet started on its connection,
+     * folding the results of the helpers as they arrive, then wait for the requests started by the helpers
+     * @param statements The statement cache of the connection taken by the search
+     * @return The PostingList of all the idx found about the Query
+     */
+    private PostingList evaluate(final StatementCache statements) {
+        int received = 0;
+        int index;
+        while (!this.cancelled && (index = this.next.getAndIncrement()) < this.requests.length) {
+            fold(new Done(index, this.evaluator.evaluate(statements, this.requests[index])));
+            received++;
+            Object done;
+            while ((done = this.completed.poll()) != null) {
+                fold(done);
+                received++;
+            }
+        }
+
+        try {
+            while (!this.cancelled && received < this.requests.length) {
+                fold(this.completed.take());
+                received++;
+            }
+        } catch (InterruptedException e) {
+            this.cancelled = true;
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return this.result;
+    }
+
+    /**
+     * Work of a helper: take an idle connection, if any, and evaluate the requests not yet started
+     * @param pool The pool of connections
+     */
+    private void help(final ConnectionPool pool) {
+        if (this.cancelled || this.next.get() >= this.requests.length) return;
+        ConnectionPool.PooledConnection connection = pool.tryAcquire();
+        if (connection == null) return;
+        try {
+            int index;
+            while (!this.cancelled && (index = this.next.getAndIncrement()) < this.requests.length)
+                this.completed.add(new Done(index, this.evaluator.evaluate(connection.getStatements(), this.requests[index])));
+        } catch (RuntimeException | Error e) {
+            this.completed.add(e);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    /**
+     * Add the result of a request to the union of its group, and intersect the group once it is complete.
+     * The search is cancelled as soon as the intersection is empty
+     * @param done The result of a request, or the exception thrown by a helper
+     */
+    private void fold(final Object done) {
+        if (done instanceof RuntimeException) {
+            this.cancelled = true;
+            throw (RuntimeException) done;
+        }
+        if (done instanceof Error) {
+            this.cancelled = true;
+            throw (Error) done;
+        }
+
+        Done d = (Done) done;
+        int g = this.groupOf[d.index];
+        long start = System.nanoTime();
+        this.unions[g] = this.unions[g].union(d.ids);
+        if (--this.pending[g] == 0) {
+            this.result = this.result == null ? this.unions[g] : this.result.intersect(this.unions[g]);
+            this.unions[g] = null;
+            if (this.result.isEmpty()) this.cancelled = true;
+        }
+        this.intersectionNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * @return The time spent in the unions and the intersections of the results, once run() has returned
+     * @see Metrics.Stage#INTERSECTION
+     */
+    long getIntersectionNanos() {
+        return this.intersectionNanos;
+    }
+}
@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable posting list: the sorted and distinct ids of the films matched by a keyword.
+ * The ids are kept in a compact int[] so that no Integer is boxed, and the lists
+ * can be intersected with a linear merge or by galloping when their sizes are far apart.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+public final class PostingList {
+    /**
+     * Ratio between the sizes of two lists above which the intersection gallops in the biggest one
+     */
+    private static final int GALLOP_RATIO = 32;
+
+    public static final PostingList EMPTY = new PostingList(new int[0], 0);
+
+    private final int[] ids;
+    private final int size;
+
+    /**
+     * Private constructor, the ids must already be sorted and distinct.
+     *
+     * @author  Dray Raphael
+     * @param ids The sorted and distinct ids
+     * @param size The number of ids used in the array
+     */
+    private PostingList(final int[] ids, final int size) {
+        this.ids = ids;
+        this.size = size;
+    }
+
+    /**
+     * Build a posting list from ids in any order, possibly repeated.
+     *
+     * @author  Dray Raphael
+     * @param ids The ids of the films, the array is sorted in place
+     * @param size The number of ids used in the array
+     * @return The posting list of the distinct ids
+     */
+    public static PostingList of(final int[] ids, final int size) {
+        Arrays.sort(ids, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; ++i)
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) ids[distinct++] = ids[i];
+        return distinct == 0 ? EMPTY : new PostingList(ids, distinct);
+    }
+
+    /**
+     * Number of ids accessor
+     * @return The number of films in the list
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return true if the list contains no film
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Id accessor
+     * @param index The position of the id, between 0 and size() - 1
+     * @return The id at the given position
+     */
+    public int get(final int index) {
+        if (index >= this.size) throw new IndexOutOfBoundsException(index + " >= " + this.size);
+        return this.ids[index];
+    }
+
+    /**
+     * @return A copy of the ids of the list
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(this.ids, this.size);
+    }
+
+    /**
+     * Intersection of this list with the one given in parameter.
+     * A linear merge is used when both lists have a comparable size,
+     * otherwise each id of the smallest list is searched by galloping in the biggest one.
+     *
+     * @author  Dray Raphael
+     * @param other The other posting list
+     * @return The ids that are in both lists
+     */
+    public PostingList intersect(final PostingList other) {
+        PostingList small = this.size <= other.size ? this : other;
+        PostingList big = small == this ? other : this;
+        if (small.size == 0) return EMPTY;
+
+        int[] result = new int[small.size];
+        int count = 0;
+
+        if ((long) small.size * GALLOP_RATIO < big.size) {
+            int low = 0;
+            for (int i = 0; i < small.size && low < big.size; ++i) {
+                int id = small.ids[i];
+                low = gallop(big.ids, low, big.size, id);
+                if (low < big.size && big.ids[low] == id) result[count++] = id;
+            }
+        } else {
+            int i = 0, j = 0;
+            while (i < small.size && j < big.size) {
+                int a = small.ids[i], b = big.ids[j];
+                if (a < b) ++i;
+                else if (a > b) ++j;
+                else {
+                    result[count++] = a;
+                    ++i;
+                    ++j;
+                }
+            }
+        }
+
+        return count == 0 ? EMPTY : new PostingList(result, count);
+    }
+
+    /**
+     * Union of this list with the one given in parameter, by a linear merge.
+     *
+     * @author  Dray Raphael
+     * @param other The other posting list
+     * @return The ids that are in at least one of the lists
+     */
+    public PostingList union(final PostingList other) {
+        if (other.size == 0) return this;
+        if (this.size == 0) return other;
+
+        int[] result = new int[this.size + other.size];
+        int count = 0, i = 0, j = 0;
+        while (i < this.size && j < other.size) {
+            int a = this.ids[i], b = other.ids[j];
+            if (a < b) {
+                result[count++] = a;
+                ++i;
+            } else if (a > b) {
+                result[count++] = b;
+                ++j;
+            } else {
+                result[count++] = a;
+                ++i;
+                ++j;
+            }
+        }
+        while (i < this.size) result[count++] = this.ids[i++];
+        while (j < other.size) result[count++] = other.ids[j++];
+
+        return new PostingList(result, count);
+    }
+
+    /**
+     * Intersection of all the lists given in parameter.
+     * The lists are intersected from the smallest to the biggest
+     * and the intersection stops as soon as it is empty.
+     *
+     * @author  Dray Raphael
+     * @param lists The posting lists, bound by an "and" relation
+     * @return The ids that are in every list
+     */
+    public static PostingList intersectAll(final List<PostingList> lists) {
+        if (lists.isEmpty()) return EMPTY;
+
+        List<PostingList> sorted = new ArrayList<>(lists);
+        sorted.sort(Comparator.comparingInt(PostingList::size));
+
+        PostingList result = sorted.get(0);
+        for (int i = 1; i < sorted.size() && !result.isEmpty(); ++i)
+            result = result.intersect(sorted.get(i));
+        return result;
+    }
+
+    /**
+     * Union of all the lists given in parameter.
+     *
+     * @author  Dray Raphael
+     * @param lists The posting lists, bound by an "or" relation
+     * @return The ids that are in at least one list
+     */
+    public static PostingList unionAll(final List<PostingList> lists) {
+        PostingList result = EMPTY;
+        for (PostingList list : lists) result = result.union(list);
+        return result;
+    }
+
+    /**
+     * Find by galloping then binary search the first position of ids, from low, whose id is not lower than the target.
+     *
+     * @param ids The sorted ids
+     * @param low The first position to consider
+     * @param size The number of ids used in the array
+     * @param target The id looked for
+     * @return The position of the first id greater or equal to the target, size if there is none
+     */
+    private static int gallop(final int[] ids, int low, final int size, final int target) {
+        int step = 1;
+        int high = low;
+        while (high < size && ids[high] < target) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high + 1, size);
+
+        int index = Arrays.binarySearch(ids, low, high, target);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Builder accumulating the ids of a posting list in any order.
+     *
+     * @author  Dray Raphael
+     */
+    public static final class Builder {
+        private int[] ids = new int[16];
+        private int size;
+
+        /**
+         * Add an id to the list being built
+         * @param id The id of a film
+         * @return This builder
+         */
+        public Builder add(final int id) {
+            if (this.size == this.ids.length) this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            this.ids[this.size++] = id;
+            return this;
+        }
+
+        /**
+         * @return The posting list of the distinct ids added
+         */
+        public PostingList build() {
+            return PostingList.of(this.ids, this.size);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tree of a query produced by the Analyzer: an "and" of groups, each group being an "or" of Requests.
+ * {[Request1][Request2][Request3]}
+ * {[Request4]}
+ * {[Request5]}
+ * Request 1, 2 and 3 are bound by an "or" relation, and the three groups by an "and" relation.
+ * When the analysis stops on an invalid request, the query holds the requests analyzed before it
+ * and the message of the error.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see Analyzer
+ * @see Request
+ */
+public class Query {
+    private final List<List<Request>> groups;
+    private final String error;
+
+    /**
+     * Simple constructor.
+     *
+     * @author  Dray Raphael
+     * @param groups The "or" groups of requests
+     * @param error The message of the error that stopped the analysis, null if there was none
+     */
+    Query(final List<List<Request>> groups, final String error) {
+        this.groups = Collections.unmodifiableList(groups);
+        this.error = error;
+    }
+
+    /**
+     * Groups accessor
+     * @return The "or" groups of requests, bound together by an "and" relation
+     */
+    public List<List<Request>> getGroups() {
+        return this.groups;
+    }
+
+    /**
+     * @return The number of requests of all the groups
+     */
+    public int size() {
+        int size = 0;
+        for (List<Request> group : this.groups) size += group.size();
+        return size;
+    }
+
+    /**
+     * Fold the groups made of a single request EN, AVANT or APRES into one request EN over the interval of years
+     * accepted by all of them, put in place of the first one: "APRES 1950, AVANT 1960" becomes "EN 1951..1959".
+     * The groups are bound by an "and" relation, so the interval is the intersection of their intervals,
+     * and the films of the years are read once instead of once per request.
+     * The groups holding an "or" of several requests are kept as they are
+     * @return The folded Query, this Query if it holds less than two such groups
+     * @see Request#Request(int, int)
+     */
+    public Query foldYears() {
+        int years = 0;
+        for (List<Request> group : this.groups)
+            if (group.size() == 1 && Request.isYear(group.get(0).getKeyWord())) ++years;
+        if (years < 2) return this;
+
+        int min = Integer.MIN_VALUE, max = Integer.MAX_VALUE, first = -1;
+        List<List<Request>> groups = new ArrayList<>(this.groups.size() - years + 1);
+        for (List<Request> group : this.groups) {
+            if (group.size() == 1 && Request.isYear(group.get(0).getKeyWord())) {
+                min = Math.max(min, group.get(0).getMinYear());
+                max = Math.min(max, group.get(0).getMaxYear());
+                if (first < 0) first = groups.size();
+                continue;
+            }
+            groups.add(group);
+        }
+        groups.add(first, Collections.singletonList(new Request(min, max)));
+        return new Query(groups, this.error);
+    }
+
+    /**
+     * @return true if a group of the query accepts no film whatever the Database, its requests being empty intervals of years,
+     * so that the query is answered without reading the Database
+     * @see Request#isEmptyInterval()
+     */
+    public boolean isUnsatisfiable() {
+        for (List<Request> group : this.groups) {
+            boolean empty = !group.isEmpty();
+            for (Request request : group) empty &= request.isEmptyInterval();
+            if (empty) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Error accessor
+     * @return The message of the error that stopped the analysis, null if there was none
+     */
+    public String getError() {
+        return this.error;
+    }
+
+    /**
+     * Print the query with OU between the requests of a group and commas between the groups
+     * @return A String like "DE Hitchcock, TITRE vertigo OU TITRE sueurs"
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (List<Request> group : this.groups) {
+            if (sb.length() > 0) sb.append(", ");
+            for (int i = 0; i < group.size(); ++i) {
+                if (i > 0) sb.append(" OU ");
+                sb.append(group.get(i));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of the UTF-8 responses of retrouve(), bounded in entries and in bytes.
+ * <p>
+ * The key is a canonical form of the requests produced by the Analyzer, so that
+ * "DE Hitchcock, EN 1958" and "EN 1958 DE Hitchcock" share the same entry:
+ * the values are normalized, the requests of an "or" group are sorted, and so are the groups.
+ * The whole cache is invalidated when the Database file changes.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+public class QueryCache {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final DatabaseWatcher watcher;
+    private final LinkedHashMap<String, byte[]> entries;
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    private long generation;
+
+    /**
+     * Constructor of an empty cache.
+     *
+     * @author  Dray Raphael
+     * @param maxEntries The maximum number of responses kept, 0 to disable the cache
+     * @param maxBytes The maximum number of bytes of all the responses kept
+     * @param watcher The watcher of the Database file whose changes invalidate the cache
+     * @see DatabaseWatcher
+     */
+    public QueryCache(final int maxEntries, final long maxBytes, final DatabaseWatcher watcher) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.watcher = watcher;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.generation = watcher.getGeneration();
+    }
+
+    /**
+     * Build the canonical form of the Query produced by the Analyzer.
+     * Each request is normalized according to its keyword, so that two keys are equal only
+     * if the requests have the same results: the case of the ASCII letters of TITRE and PAYS is folded
+     * (they are compared without case by SQLite), PAYS is replaced by its codes once resolved by the Analyzer,
+     * the names of DE and AVEC are folded without accents nor case
+     * and the years are written as numbers.
+     * The punctuation and the extra blanks have already been removed by the Analyzer.
+     *
+     * @author  Dray Raphael
+     * @param query The Query produced by the Analyzer
+     * @return The canonical key
+     * @see Analyzer
+     */
+    public static String canonicalKey(final Query query) {
+        List<String> groups = new ArrayList<>(query.getGroups().size());
+        for (List<Request> group : query.getGroups()) {
+            List<String> members = new ArrayList<>(group.size());
+            for (Request request : group) members.add(canonicalRequest(request));
+            members.sort(null);
+            groups.add(String.join("|", members));
+        }
+        groups.sort(null);
+        return String.join("&", groups);
+    }
+
+    /**
+     * Return the cached response of a key, if the cache is enabled and the key known
+     * @param key The canonical key of the request
+     * @return The response, null if it is not in the cache
+     * @author Dray Raphael
+     */
+    public synchronized byte[] get(final String key) {
+        if (this.maxEntries == 0) return null;
+        long generation = this.watcher.getGeneration();
+        if (generation != this.generation) {
+            this.generation = generation;
+            clear();
+        }
+
+        byte[] response = this.entries.get(key);
+        if (response == null) this.misses++;
+        else this.hits++;
+        return response;
+    }
+
+    /**
+     * Keep the response of a key, evicting the least recently used responses if the cache is full
+     * @param key The canonical key of the request
+     * @param response The response of retrouve(), encoded in UTF-8
+     * @author Dray Raphael
+     */
+    public synchronized void put(final String key, final byte[] response) {
+        if (this.maxEntries == 0 || response.length > this.maxBytes) return;
+
+        byte[] previous = this.entries.put(key, response);
+        if (previous != null) this.bytes -= previous.length;
+        this.bytes += response.length;
+
+        Iterator<Map.Entry<String, byte[]>> eldest = this.entries.entrySet().iterator();
+        while (this.entries.size() > this.maxEntries || this.bytes > this.maxBytes) {
+            Map.Entry<String, byte[]> entry = eldest.next();
+            this.bytes -= entry.getValue().length;
+            eldest.remove();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Remove all the responses of the cache
+     * @author Dray Raphael
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+        this.invalidations++;
+    }
+
+    /**
+     * @return The maximum number of bytes of all the responses kept, hence of a single response
+     */
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * @return The number of requests answered by the cache
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return The number of requests that were not in the cache
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * @return The number of responses removed because the cache was full
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * @return The number of times the whole cache has been invalidated
+     */
+    public synchronized long getInvalidations() {
+        return this.invalidations;
+    }
+
+    /**
+     * @return The number of responses in the cache
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Normalize a request produced by the Analyzer according to its keyword:
+     * the names of DE and AVEC are folded like the NameIndex compares them,
+     * and EN, AVANT and APRES become the interval of years they accept, so that "AVANT 1960" and "EN ..1959" are the same
+     * @param request The request
+     * @return The normalized request
+     */
+    static String canonicalRequest(final Request request) {
+        KeyWord keyWord = request.getKeyWord();
+        if (Request.isYear(keyWord))
+            return KeyWord.DATE.getName() + ';' + request.getMinYear() + ".." + request.getMaxYear();
+        if (keyWord == KeyWord.PAYS && request.getCodes() != null)
+            return keyWord.getName() + ';' + String.join(",", request.getCodes());
+        if (keyWord == KeyWord.TITRE || keyWord == KeyWord.PAYS)
+            return keyWord.getName() + ';' + Catalogue.lowerAscii(request.getValue());
+        return keyWord.getName() + ';' + NameIndex.fold(request.getValue());
+    }
+}
@@ -0,0 +1,152 @@
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class that compiles the Query produced by the Analyzer in a single SQL statement.
+ * Each "or" group becomes a common table expression made of the UNION of its requests,
+ * and the groups are bound together by INTERSECT:
+ * WITH g0 AS (Request1 UNION Request2 UNION Request3), g1 AS (Request4), g2 AS (Request5)
+ * SELECT id_film FROM g0 INTERSECT SELECT id_film FROM g1 INTERSECT SELECT id_film FROM g2
+ * SQLite returns all the ids found, so that they can be counted and ordered like the films of the other modes.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+public class QueryCompiler {
+
+    /**
+     * Compile the Query given in parameter in a single SQL statement.
+     *
+     * @author  Dray Raphael
+     * @param query The Query produced by the Analyzer
+     * @param names The index resolving the persons of DE and AVEC
+     * @param countries The dictionary resolving the values of PAYS the Analyzer has not resolved
+     * @return The compiled statement, ready to be prepared and bound
+     * @see Analyzer
+     */
+    public CompiledQuery compile(final Query query, final NameIndex names, final CountryDictionary countries) {
+        StringBuilder with = new StringBuilder("WITH ");
+        StringBuilder select = new StringBuilder();
+        ArrayList<Object> parameters = new ArrayList<>();
+
+        int group = 0;
+        for (List<Request> requests : query.getGroups()) {
+            if (group > 0) {
+                with.append(", ");
+                select.append(" INTERSECT ");
+            }
+            with.append('g').append(group).append(" AS (");
+
+            boolean first = true;
+            for (Request request : requests) {
+                if (!first) with.append(" UNION ");
+                first = false;
+                compileRequest(request, names, countries, with, parameters);
+            }
+
+            with.append(')');
+            select.append("SELECT id_film FROM g").append(group);
+            ++group;
+        }
+
+        if (group == 0) return new CompiledQuery("SELECT id_film FROM films WHERE 0", new ArrayList<>());
+
+        return new CompiledQuery(with + " " + select, parameters);
+    }
+
+    /**
+     * Append to the statement the SELECT of an individual request.
+     *
+     * @author  Dray Raphael
+     * @param request The request
+     * @param names The index resolving the persons of DE and AVEC
+     * @param countries The dictionary resolving the values of PAYS the Analyzer has not resolved
+     * @param sql The statement being built
+     * @param parameters The parameters of the statement being built
+     */
+    private void compileRequest(final Request request, final NameIndex names, final CountryDictionary countries,
+                                final StringBuilder sql, final ArrayList<Object> parameters) {
+        switch (request.getKeyWord()) {
+            case TITRE:
+                sql.append("SELECT id_film FROM films WHERE titre LIKE '%' || replace(?, ' ', '%') || '%' " +
+                           "UNION SELECT id_film FROM autres_titres WHERE titre LIKE '%' || replace(?, ' ', '%') || '%'");
+                parameters.add(request.getValue());
+                parameters.add(request.getValue());
+                break;
+            case REALISATEUR:
+            case ACTEUR:
+                // The persons are resolved without accents nor case by the index, and bound as a JSON array
+                sql.append("SELECT id_film FROM generique " +
+                           "WHERE role = ? AND id_personne IN (SELECT value FROM json_each(?))");
+                parameters.add(NameIndex.role(request.getKeyWord()));
+                parameters.add(Arrays.toString(names.personnes(request.getValue())));
+                break;
+            case PAYS:
+                String[] codes = request.getCodes() != null ? request.getCodes() : countries.resolve(request.getValue());
+                sql.append("SELECT id_film FROM films WHERE pays IN (SELECT value FROM json_each(?))");
+                parameters.add(jsonArray(codes));
+                break;
+            case DATE:
+            case AVANT:
+            case APRES:
+                // The interval of years, the requests of the query having been folded by Query.foldYears()
+                sql.append("SELECT id_film FROM films WHERE annee BETWEEN ? AND ?");
+                parameters.add(request.getMinYear());
+                parameters.add(request.getMaxYear());
+                break;
+            default:
+                sql.append("SELECT id_film FROM films WHERE 0");
+                break;
+        }
+    }
+
+    /**
+     * @param codes The codes of countries
+     * @return The JSON array of the codes, like ["fr","us"]
+     */
+    private static String jsonArray(final String[] codes) {
+        StringBuilder sb = new StringBuilder("[");
+        for (String code : codes) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append('"').append(code.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * A SQL statement compiled from a request, with its parameters in order.
+     *
+     * @author  Dray Raphael
+     */
+    public static final class CompiledQuery {
+        private final String sql;
+        private final ArrayList<Object> parameters;
+
+        private CompiledQuery(final String sql, final ArrayList<Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        /**
+         * SQL accessor
+         * @return The SQL of the statement
+         */
+        public String getSql() {
+            return this.sql;
+        }
+
+        /**
+         * Bind the parameters of the statement
+         * @param statement The statement prepared from getSql()
+         * @throws SQLException If a parameter cannot be bound
+         * @see PreparedStatement
+         */
+        public void bind(final PreparedStatement statement) throws SQLException {
+            for (int i = 0; i < this.parameters.size(); ++i)
+                statement.setObject(i + 1, this.parameters.get(i));
+        }
+    }
+}
@@ -1,31 +1,137 @@
-import org.json.JSONObject;
-
-import java.io.StringWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Search of a film in a database from a language of defined keywords
+ * Search of a film in a database from a language of defined keywords.
+ * An instance can be shared between threads: each call to retrouve()
+ * takes a read-only connection of its ConnectionPool for its whole duration.
+ * Each stage of a search is timed by the Metrics of the instance, and the progress of the searches
+ * is logged by the Logger "RechercheFilm" at the level FINE, which is off by default.
  * @author Dray Raphael
  * @version 1.0
  */
 public class RechercheFilm {
-    private String SQLiteFilename;
-    private Connection dbConnection;
+    private final String SQLiteFilename;
+    private final ConnectionPool pool;
+    private final QueryCompiler compiler;
+    private final DatabaseWatcher watcher;
+    private volatile QueryCache queryCache;
+    private volatile FilmCache filmCache;
+    private volatile ExecutionMode executionMode = ExecutionMode.POSTING_LISTS;
+    private final Reloadable<Catalogue> catalogue;
+    private final Reloadable<FilmOrder> filmOrder;
+    private final Reloadable<NameIndex> nameIndex;
+    private final Reloadable<CountryDictionary> countries;
+    private final Reloadable<YearIndex> years;
+    private final Reloadable<Statistics> statistics;
+    private final Metrics metrics;
+    private volatile SlowQueryLog slowQueryLog;
+    private final ExecutorService predicateExecutor;
+    private final ParallelSearch.Evaluator timedEvaluator;
+    private volatile boolean parallelPredicates = true;
+
+    private static final Logger LOGGER = Logger.getLogger(RechercheFilm.class.getName());
 
     private static final String DB_URL = "jdbc:sqlite:";
+    private static final int MAX_RESULTS = 100;
+    private static final int MAX_LIMIT = 1000;
+    private static final int HYDRATION_CHUNK = 512;
+    private static final int STATEMENT_CACHE_CAPACITY = 64;
+    private static final int QUERY_CACHE_ENTRIES = 1024;
+    private static final long QUERY_CACHE_BYTES = 16L * 1024 * 1024;
+    private static final long FILM_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final int STAGES = Metrics.Stage.values().length;
+    private static final int BATCH_SIZE = 512;
+    private static final int MAX_PROBED_CANDIDATES = 1024;
+
+    private static final String SQL_TITRE_LIKE = "SELECT id_film " +
+                                                 "FROM films " +
+                                                 "WHERE titre LIKE '%' || replace(?, ' ', '%') || '%' " +
+                                                 "UNION " +
+                                                 "SELECT id_film " +
+                                                 "FROM autres_titres " +
+                                                 "WHERE titre LIKE '%' || replace(?, ' ', '%') || '%'";
+    private static final String SQL_TITRE_LIKE_PROBE = "SELECT id_film " +
+                                                       "FROM films " +
+                                                       "WHERE id_film IN (SELECT value FROM json_each(?)) " +
+                                                       "AND titre LIKE '%' || replace(?, ' ', '%') || '%' " +
+                                                       "UNION " +
+                                                       "SELECT id_film " +
+                                                       "FROM autres_titres " +
+                                                       "WHERE id_film IN (SELECT value FROM json_each(?)) " +
+                                                       "AND titre LIKE '%' || replace(?, ' ', '%') || '%'";
+    private static final String SQL_HYDRATE_FILMS = "SELECT id_film, titre, annee, duree, pays " +
+                                                    "FROM films " +
+                                                    "WHERE id_film IN (%s)";
+    private static final String SQL_HYDRATE_AUTRES_TITRES = "SELECT id_film, titre " +
+                                                            "FROM autres_titres " +
+                                                            "WHERE id_film IN (%s)";
+    private static final String SQL_HYDRATE_GENERIQUE = "SELECT g.id_film, g.role, p.nom, p.prenom " +
+                                                        "FROM generique g " +
+                                                        "JOIN personnes p ON p.id_personne = g.id_personne " +
+                                                        "WHERE g.id_film IN (%s)";
 
     /**
      * Constructor that connect to the SQLite Database given in parameter
+     * with a pool of one read-only connection per available processor
      * @param SQLiteFilename The File *.sqlite which is the SQLite Database
      * @author Dray Raphael
-     * @see Connection
+     * @see ConnectionPool
      */
     public RechercheFilm(final String SQLiteFilename) {
+        this(SQLiteFilename, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor that connect to the SQLite Database given in parameter with a pool of read-only connections.
+     * The order of the films and the indexes of the names, the countries and the years are read
+     * the first time a search needs them, so that the construction does not read the whole Database
+     * @param SQLiteFilename The File *.sqlite which is the SQLite Database
+     * @param poolSize The number of read-only connections, hence of concurrent searches
+     * @author Dray Raphael
+     * @see ConnectionPool
+     */
+    public RechercheFilm(final String SQLiteFilename, final int poolSize) {
         this.SQLiteFilename = SQLiteFilename;
-        this.dbConnection = connect(this.SQLiteFilename);
-        System.out.println("Connection to database " + this.SQLiteFilename + " has been established...");
+        this.watcher = new DatabaseWatcher(this.SQLiteFilename);
+
+        this.catalogue = new Reloadable<>("Catalogue", (connection, generation) ->
+                                          CatalogueFile.open(this.SQLiteFilename, connection));
+        this.filmOrder = new Reloadable<>("Order of the films", FilmOrder::load);
+        this.nameIndex = new Reloadable<>("Index of the names", NameIndex::load);
+        this.countries = new Reloadable<>("Dictionary of the countries", CountryDictionary::load);
+        this.years = new Reloadable<>("Index of the years", YearIndex::load);
+        this.statistics = new Reloadable<>("Statistics", Statistics::load);
+        this.compiler = new QueryCompiler();
+        this.queryCache = new QueryCache(QUERY_CACHE_ENTRIES, QUERY_CACHE_BYTES, this.watcher);
+        this.filmCache = new FilmCache(FilmCache.Policy.TINY_LFU, FILM_CACHE_BYTES, this.watcher);
+
+        this.pool = new ConnectionPool(this.SQLiteFilename, poolSize, STATEMENT_CACHE_CAPACITY);
+        this.metrics = new Metrics(this);
+        this.metrics.register(this.SQLiteFilename);
+        this.predicateExecutor = newPredicateExecutor(poolSize - 1);
+        this.timedEvaluator = (statements, request) -> {
+            long start = System.nanoTime();
+            PostingList ids = evaluate(statements, request);
+            this.metrics.getKeyWord(request.getKeyWord()).recordSince(start);
+            return ids;
+        };
+        LOGGER.info("Connection to database " + this.SQLiteFilename + " has been established ("
+                    + poolSize + " read-only connections)...");
     }
 
     /**
@@ -39,13 +145,74 @@ public class RechercheFilm {
     }
 
     /**
-     * Connection to the Database accessor
-     * @return The connection to the Database
+     * Pool of connections to the Database accessor, which gives the pool-wait,
+     * usage and statement cache metrics
+     * @return The pool of read-only connections to the Database
      * @author Dray Raphael
-     * @see Connection
+     * @see ConnectionPool
+     */
+    public ConnectionPool getConnectionPool() {
+        return this.pool;
+    }
+
+    /**
+     * Metrics accessor
+     * @return The latencies of the stages of the searches, the counters of the keywords
+     * and the export of the statistics of the caches
+     * @author Dray Raphael
+     * @see Metrics
+     */
+    public Metrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Execution mode accessor
+     * @return The way the requests are executed
+     * @author Dray Raphael
+     * @see ExecutionMode
+     */
+    public ExecutionMode getExecutionMode() {
+        return this.executionMode;
+    }
+
+    /**
+     * Choose the way the requests are executed, so that the results and the latency of the modes can be compared.
+     * The in-memory Catalogue is opened the first time the mode IN_MEMORY is chosen
+     * @param executionMode The way the requests are executed
+     * @author Dray Raphael
+     * @see ExecutionMode
+     * @see Catalogue
+     */
+    public void setExecutionMode(final ExecutionMode executionMode) {
+        if (executionMode == ExecutionMode.IN_MEMORY) this.catalogue.get();
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Return the dictionary of the countries resolving the values of PAYS when a request is parsed:
+     * the one of the Catalogue in the mode IN_MEMORY, so that the Database is not read,
+     * the one read from the Database otherwise
+     * @return The dictionary of the countries
+     * @author Dray Raphael
+     * @see Analyzer
+     * @see CountryDictionary
      */
-    public Connection getDbConnection() {
-        return this.dbConnection;
+    private CountryDictionary getCountries() {
+        return this.executionMode == ExecutionMode.IN_MEMORY ? this.catalogue.get().getCountries() : this.countries.get();
+    }
+
+    /**
+     * Create the executor of the helpers of the ParallelSearch:
+     * one thread per connection that a search can take besides its own
+     * @param threads The number of connections a search can take besides its own
+     * @return The executor, null if the searches cannot take more than one connection
+     * @author Dray Raphael
+     * @see ParallelSearch
+     * @see VirtualThreads
+     */
+    private static ExecutorService newPredicateExecutor(final int threads) {
+        return threads < 1 ? null : VirtualThreads.newExecutor("RechercheFilm-predicate", threads);
     }
 
     /**
@@ -67,729 +234,1391 @@ public class RechercheFilm {
     }
 
     /**
-     * Close the connection to the Database if we are connected
+     * Query cache accessor
+     * @return The cache of the responses of retrouve()
      * @author Dray Raphael
-     * @see Connection
-     * @see SQLException
+     * @see QueryCache
+     */
+    public QueryCache getQueryCache() {
+        return this.queryCache;
+    }
+
+    /**
+     * Replace the cache of the responses by an empty one
+     * @param maxEntries The maximum number of responses kept, 0 to disable the cache
+     * @param maxBytes The maximum number of bytes of all the responses kept
+     * @author Dray Raphael
+     * @see QueryCache
+     */
+    public void setQueryCache(final int maxEntries, final long maxBytes) {
+        this.queryCache = new QueryCache(maxEntries, maxBytes, this.watcher);
+    }
+
+    /**
+     * Film cache accessor
+     * @return The cache of the hydrated films
+     * @author Dray Raphael
+     * @see FilmCache
+     */
+    public FilmCache getFilmCache() {
+        return this.filmCache;
+    }
+
+    /**
+     * Replace the cache of the hydrated films by an empty one
+     * @param policy The eviction policy of the new cache
+     * @param maxBytes The memory budget of the new cache, in bytes, 0 to disable the cache
+     * @author Dray Raphael
+     * @see FilmCache
+     */
+    public void setFilmCache(final FilmCache.Policy policy, final long maxBytes) {
+        this.filmCache = new FilmCache(policy, maxBytes, this.watcher);
+    }
+
+    /**
+     * @return true if the requests of a query are evaluated in parallel in the mode POSTING_LISTS
+     * @author Dray Raphael
+     * @see ParallelSearch
+     */
+    public boolean isParallelPredicates() {
+        return this.parallelPredicates;
+    }
+
+    /**
+     * Choose whether the requests of a query are evaluated in parallel, on several connections of the pool,
+     * in the mode POSTING_LISTS. They are evaluated in parallel by default when the pool has more than one connection
+     * @param parallelPredicates true to evaluate the requests in parallel
+     * @author Dray Raphael
+     * @see ParallelSearch
+     */
+    public void setParallelPredicates(final boolean parallelPredicates) {
+        this.parallelPredicates = parallelPredicates;
+    }
+
+    /**
+     * Slow query log accessor
+     * @return The log of the slow searches, null if they are not logged
+     * @author Dray Raphael
+     * @see SlowQueryLog
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return this.slowQueryLog;
+    }
+
+    /**
+     * Log the slow searches, and a sample of the others, in the log given in parameter.
+     * The previous log, if any, is closed
+     * @param slowQueryLog The log, null to stop logging
+     * @author Dray Raphael
+     * @see SlowQueryLog
+     */
+    public void setSlowQueryLog(final SlowQueryLog slowQueryLog) {
+        SlowQueryLog previous = this.slowQueryLog;
+        this.slowQueryLog = slowQueryLog;
+        if (previous != null && previous != slowQueryLog) previous.close();
+    }
+
+    /**
+     * Close the pool of connections to the Database,
+     * after waiting for the searches in progress to give back their connection,
+     * stop the threads evaluating the requests in parallel, unregister the MBeans of the Metrics and close the SlowQueryLog
+     * @author Dray Raphael
+     * @see ConnectionPool
      */
     public void fermeBase() {
-        if(this.dbConnection != null) {
-            try {
-                this.dbConnection.close();
-                System.out.println("Database " + this.SQLiteFilename + " has been closed.");
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-        }
+        if (this.predicateExecutor != null) this.predicateExecutor.shutdown();
+        this.pool.close();
+        this.metrics.unregister();
+        setSlowQueryLog(null);
+        LOGGER.info("Database " + this.SQLiteFilename + " has been closed.");
     }
 
     /**
      * Principal function to search about the request
-     * It returns the result of the SQL request in the SQLite Database
+     * It returns the first MAX_RESULTS films found in the SQLite Database
      * The result is returned as JSON Object.
      * @param str The Request
-     * @return The result derived from the toString() method of StringWriter object
-     * which we have written in it the JSON of the SQL request.
+     * @return The JSON written by retrouve(String, int, int, OutputStream), decoded from UTF-8
      * @author Dray Raphael
-     * @see JSONObject
-     * @see StringWriter
+     * @see JsonWriter
      * @see Analyzer
      * @see InfoFilm
      */
     public String retrouve(final String str) {
-        StringWriter output = new StringWriter();
-        JSONObject json = new JSONObject();
-
-        String[] verification = str.split(" ");
-
-        if(verification.length < 2) {
-            json.put("erreur", "Vous devez entrer au moins deux arguments !");
-            json.write(output);
-            return output.toString();
-        }
+        return retrouve(str, 0, MAX_RESULTS);
+    }
 
-        else if(verification[0].equals("OU")) {
-            json.put("erreur", "Vous ne pouvez pas commencer une requete par OU");
-            json.write(output);
-            return output.toString();
+    /**
+     * Principal function to search about the request, returning a page of the result
+     * @param str The Request
+     * @param offset The number of films to skip, in the order of InfoFilm.compareTo
+     * @param limit The maximum number of films returned, at most MAX_LIMIT
+     * @return The JSON written by retrouve(String, int, int, OutputStream), decoded from UTF-8
+     * @author Dray Raphael
+     * @see JsonWriter
+     * @see InfoFilm
+     */
+    public String retrouve(final String str, final int offset, final int limit) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            retrouve(str, offset, limit, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
 
-        else if(isKeyword(verification[verification.length - 1])) {
-            json.put("erreur", "La recherche ne peut pas se terminer par un mot-clef !");
-            json.write(output);
-            return output.toString();
-        }
+    /**
+     * Principal function to search about the request, writing the first MAX_RESULTS films as they are encoded
+     * @param str The Request
+     * @param out The stream receiving the JSON
+     * @throws IOException If the stream fails
+     * @author Dray Raphael
+     * @see #retrouve(String, int, int, OutputStream)
+     */
+    public void retrouve(final String str, final OutputStream out) throws IOException {
+        retrouve(str, 0, MAX_RESULTS, out);
+    }
 
-        else {
-            for(int i = 1; i < verification.length; ++i)
-                if(isKeyword(verification[i - 1]) && isKeyword(verification[i])) {
-                    json.put("erreur", "Vous ne pouvez pas associer deux mot-clefs excepté OU");
-                    json.write(output);
-                    return output.toString();
-                }
+    /**
+     * Principal function to search about the request, writing a page of the result as it is encoded.
+     * The films are ordered by InfoFilm.compareTo: the ids found are ranked by a FilmOrder
+     * and only the films of the page are hydrated.
+     * The JSON Object is written in UTF-8 to the stream given in parameter, which is flushed but not closed:
+     * {"resultat":[films...],"total":count} with an "info" member when more films follow the page,
+     * or {"erreur":"..."} if the request is not valid.
+     * @param str The Request
+     * @param offset The number of films to skip
+     * @param limit The maximum number of films returned, at most MAX_LIMIT
+     * @param out The stream receiving the JSON
+     * @throws IOException If the stream fails
+     * @throws IllegalArgumentException If the offset is negative or the limit not between 1 and MAX_LIMIT
+     * @author Dray Raphael
+     * @see JsonWriter
+     * @see FilmOrder
+     * @see Analyzer
+     * @see InfoFilm
+     */
+    public void retrouve(final String str, final int offset, final int limit, final OutputStream out) throws IOException {
+        if (offset < 0) throw new IllegalArgumentException("The offset cannot be negative");
+        if (limit < 1 || limit > MAX_LIMIT) throw new IllegalArgumentException("The limit must be between 1 and " + MAX_LIMIT);
+
+        final long start = System.nanoTime();
+        final long[] stages = new long[STAGES];
+        this.metrics.countRequest();
+
+        String erreur = checkRequest(str);
+        if (erreur != null) {
+            this.metrics.countError();
+            writeErreur(out, erreur);
+            finish(str, null, stages, System.nanoTime() - start, -1, false);
+            return;
         }
 
-
-        Analyzer an = new Analyzer(str);
-        final LinkedList<LinkedList<String>> requete = an.getRequestedList();
-        LinkedList<LinkedList<Integer>> results = new LinkedList<>();
-
-        for (LinkedList<String> request : requete) {
-            for(String s : request) {
-                String[] splittedString = s.split(";");
-
-                switch (splittedString[0].toUpperCase()) {
-                    case "TITRE":
-                        System.out.println("Retrieving for TITRE keyword..");
-                        results.addLast(TitreRequest(splittedString[1]));
-                        break;
-                    case "DE":
-                        System.out.println("Retrieving for DE keyword..");
-                        String[] splitSplittedString = splittedString[1].split(" ");
-                        String arg1 = splitSplittedString[0];
-                        String arg2 = splitSplittedString.length > 1 ? splitSplittedString[1] : "%";
-                        results.addLast(DeAvecRequest(arg1, arg2));
-                        break;
-                    case "AVEC":
-                        System.out.println("Retrieving for AVEC keyword..");
-                        results.addLast(DeAvecRequest(splittedString[1].split(" ")[0],
-                                                      splittedString[1].split(" ")[1]));
-                        break;
-                    case "PAYS":
-                        System.out.println("Retrieving for PAYS keyword..");
-                        results.addLast(PaysRequest(splittedString[1].replace(' ', '-').toUpperCase()));
-                        break;
-                    case "EN":
-                        System.out.println("Retrieving for EN keyword..");
-                        results.addLast(EnRequest(Integer.parseInt(splittedString[1])));
-                        break;
-                    case "AVANT":
-                        System.out.println("Retrieving for AVANT keyword..");
-                        results.addLast(AvantRequest(Integer.parseInt(splittedString[1])));
-                        break;
-                    case "APRES":
-                        System.out.println("Retrieving for APRES keyword..");
-                        results.addLast(ApresRequest(Integer.parseInt(splittedString[1])));
-                        break;
-                }
-            }
-
+        final Query parsed = new Analyzer(str, getCountries()).getQuery();
+        stage(Metrics.Stage.PARSE, start, stages, null);
+        this.metrics.countKeyWords(parsed);
+        final Query query = parsed.foldYears();
+
+        final String key = QueryCache.canonicalKey(query) + "#" + offset + "," + limit;
+        final QueryCache queryCache = this.queryCache;
+        byte[] cached = queryCache.get(key);
+        if (cached != null) {
+            out.write(cached);
+            out.flush();
+            finish(str, query, stages, System.nanoTime() - start, -1, true);
+            return;
         }
 
-        System.out.println("Comparing results..");
-        LinkedList<Integer> result = getCommonId(results);
+        Page page = search(query, offset, limit, stages, null);
+        this.metrics.getResults().record(page.total);
 
-        System.out.println("Building InfoFilm for Films..");
-        LinkedList<InfoFilm> films = new LinkedList<>();
-        boolean isMaxed = false;
-        int max;
-        if(result.size() > 100) {
-            max = 100;
-            isMaxed = true;
-        } else
-            max = result.size();
+        long time = System.nanoTime();
+        RecordingOutputStream recorder = new RecordingOutputStream(out, queryCache.getMaxBytes());
+        writePage(recorder, page, offset, limit);
+        stage(Metrics.Stage.SERIALIZATION, time, stages, null);
 
-        for (int i = 0; i < max; i++) {
-            int id = result.get(i);
-            films.addLast(getInfoFilm(id));
-        }
+        byte[] response = recorder.getRecorded();
+        if (response != null)
+            queryCache.put(key, response);
+        finish(str, query, stages, System.nanoTime() - start, page.total, false);
+    }
 
-        json.put("resultat", films.toString());
-        if(isMaxed)
-            json.put("info", "Résultat limité à 100 films");
-        json.write(output);
+    /**
+     * Write the response to a request that is not valid: {"erreur":"..."}
+     * @param out The stream receiving the JSON, which is flushed but not closed
+     * @param erreur The error message
+     * @throws IOException If the stream fails
+     * @author Dray Raphael
+     * @see JsonWriter
+     */
+    private static void writeErreur(final OutputStream out, final String erreur) throws IOException {
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        json.beginObject().name("erreur").value(erreur).endObject();
+        json.finish();
+    }
 
-        return output.toString();
+    /**
+     * Write the response of a page of the result: {"resultat":[films...],"total":count}
+     * with an "info" member when more films follow the page
+     * @param out The stream receiving the JSON, which is flushed but not closed
+     * @param page The films of the page and the number of films found
+     * @param offset The number of films skipped
+     * @param limit The maximum number of films of the page
+     * @throws IOException If the stream fails
+     * @author Dray Raphael
+     * @see JsonWriter
+     * @see InfoFilm#writeJson(JsonWriter)
+     */
+    private static void writePage(final OutputStream out, final Page page, final int offset, final int limit) throws IOException {
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        json.beginObject().name("resultat").beginArray();
+        for (InfoFilm film : page.films)
+            film.writeJson(json);
+        json.endArray();
+        json.name("total").value(page.total);
+        if((long) offset + limit < page.total)
+            json.name("info").value("Résultat limité à " + limit + " films");
+        json.endObject();
+        json.finish();
     }
 
     /**
-     * Return a SQL request for the keyword TITRE with the name given in parameter
-     * @param name The title of the film that we are searching for
-     * @return A LinkedList<Integer> that contains all the idx found about the request
+     * Record the time of a whole call to retrouve() in the Metrics,
+     * and give the call to the SlowQueryLog if the searches are logged
+     * @param str The Request
+     * @param query The Query of the Analyzer, null if the request was refused
+     * @param stages The time of each stage of the call, by ordinal of Metrics.Stage
+     * @param nanos The time of the whole call
+     * @param total The number of films found, -1 if they were not counted
+     * @param cached true if the response came from the QueryCache
      * @author Dray Raphael
-     * @see ResultSet
-     * @see PreparedStatement
-     * @see Connection
-     * @see SQLException
+     * @see SlowQueryLog
      */
-    private LinkedList<Integer> TitreRequest(final String name) {
-        ResultSet resultSet = null;
-        PreparedStatement statement;
-        LinkedList<Integer> result = new LinkedList<>();
+    private void finish(final String str, final Query query, final long[] stages, final long nanos,
+                        final int total, final boolean cached) {
+        stages[Metrics.Stage.RETROUVE.ordinal()] = nanos;
+        this.metrics.getStage(Metrics.Stage.RETROUVE).record(nanos);
 
-        try {
-            statement = this.dbConnection.prepareStatement("SELECT id_film " +
-                                                                "FROM (SELECT id_film " +
-                                                                "FROM films " +
-                                                                "WHERE titre " +
-                                                                "LIKE '%' || replace(?, ' ', '%') || '%' " +
-                                                                "UNION " +
-                                                                "SELECT id_film " +
-                                                                "FROM autres_titres " +
-                                                                "WHERE titre " +
-                                                                "LIKE '%' || replace(?, ' ', '%') || '%') x");
-            statement.setString(1, name);
-            statement.setString(2, name);
-            resultSet = statement.executeQuery();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            if(this.dbConnection != null) {
-                try {
-                    System.err.println("Transaction is being rolled back");
-                    this.dbConnection.rollback();
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                }
-            }
-        }
+        SlowQueryLog slowQueryLog = this.slowQueryLog;
+        if (slowQueryLog != null) slowQueryLog.offer(str, query, stages, nanos, total, cached);
+    }
 
-        while(true) {
+    /**
+     * Search a batch of requests together, as many calls to retrouve(String) would do.
+     * The requests are parsed first, then each distinct predicate of the batch is evaluated once,
+     * whatever the number of requests sharing it, and the films of all the pages are hydrated in one pass.
+     * The requests are processed by slices of BATCH_SIZE, so that the memory used does not grow with the batch
+     * @param requests The Requests
+     * @return The JSON of retrouve(String) for each request, in the same order
+     * @author Dray Raphael
+     * @see #retrouve(String)
+     */
+    public List<String> retrouveAll(final List<String> requests) {
+        List<String> responses = new ArrayList<>(requests.size());
+        for (int from = 0; from < requests.size(); from += BATCH_SIZE) {
+            List<String> slice = requests.subList(from, Math.min(from + BATCH_SIZE, requests.size()));
             try {
-                assert resultSet != null;
-                if (!resultSet.next()) break;
-                else result.addLast(resultSet.getInt(1));
-            } catch (SQLException e) {
-                e.printStackTrace();
+                responses.addAll(Arrays.asList(retrouveBatch(slice)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-
         }
-
-        return result;
+        return responses;
     }
 
     /**
-     * Return a SQL request for the keyword AVEC or DE with the name and first name given in parameter
-     * @param firstName The name of the actor or director
-     * @param lastName The first name of the actor or director
-     * @return A LinkedList<Integer> that contains all the idx found about the request
+     * Search a slice of a batch of requests, sharing the evaluation of their predicates and the hydration of their films.
+     * The groups of each request are evaluated like retrouve() evaluates them, from the most selective one,
+     * but each distinct predicate is evaluated once for the whole slice.
+     * The responses are taken from the QueryCache when possible, and put in it otherwise.
+     * Each request is timed in the Metrics and given to the SlowQueryLog like a call to retrouve():
+     * its time is the sum of its own stages, the hydration of the slice being shared between its requests
+     * in proportion of their films
+     * @param requests The Requests
+     * @return The JSON of retrouve(String) for each request
+     * @throws IOException If a response cannot be encoded
      * @author Dray Raphael
-     * @see ResultSet
-     * @see PreparedStatement
-     * @see Connection
-     * @see SQLException
-     * @see Statement
+     * @see #retrouveAll(List)
      */
-    private LinkedList<Integer> DeAvecRequest(final String firstName, final String lastName) {
-        ResultSet resultSet = null;
-        PreparedStatement statement;
-        LinkedList<Integer> result = new LinkedList<>();
+    private String[] retrouveBatch(final List<String> requests) throws IOException {
+        final int n = requests.size();
+        final String[] responses = new String[n];
+        final Query[] queries = new Query[n];
+        final String[] keys = new String[n];
+        final long[][] stages = new long[n][];
+        final QueryCache queryCache = this.queryCache;
+        final ExecutionMode mode = this.executionMode;
+        final Catalogue catalogue = mode == ExecutionMode.IN_MEMORY ? this.catalogue.get() : null;
+
+        // Parsing, and the responses already cached
+        for (int i = 0; i < n; ++i) {
+            long start = System.nanoTime();
+            stages[i] = new long[STAGES];
+            this.metrics.countRequest();
+            String str = requests.get(i);
+            String erreur = checkRequest(str);
+            if (erreur != null) {
+                this.metrics.countError();
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                writeErreur(output, erreur);
+                responses[i] = new String(output.toByteArray(), StandardCharsets.UTF_8);
+                finish(str, null, stages[i], System.nanoTime() - start, -1, false);
+                continue;
+            }
+
+            Query parsed = new Analyzer(str, getCountries()).getQuery();
+            stage(Metrics.Stage.PARSE, start, stages[i], null);
+            this.metrics.countKeyWords(parsed);
+            Query query = parsed.foldYears();
+            keys[i] = QueryCache.canonicalKey(query) + "#0," + MAX_RESULTS;
+            byte[] cached = queryCache.get(keys[i]);
+            if (cached != null) {
+                responses[i] = new String(cached, StandardCharsets.UTF_8);
+                finish(str, query, stages[i], System.nanoTime() - start, -1, true);
+                continue;
+            }
+            queries[i] = query;
+        }
+
+        // Evaluation of each request, sharing the distinct predicates or the distinct compiled queries, and pagination
+        int[][] pages = new int[n][];
+        int[] totals = new int[n];
+        InfoFilm[][] films = new InfoFilm[n][];
+        HashMap<String, PostingList> evaluated = new HashMap<>();
 
+        ConnectionPool.PooledConnection connection = catalogue == null ? this.pool.acquire() : null;
         try {
-            statement = this.dbConnection.prepareStatement("SELECT id_personne " +
-                                                                "FROM personnes " +
-                                                                "WHERE nom = ? AND prenom = ? " +
-                                                                "OR nom = ? AND prenom = ? " +
-                                                                "OR nom = ?");
-
-            statement.setString(1, firstName);
-            statement.setString(2, lastName);
-            statement.setString(3, lastName);
-            statement.setString(4, firstName);
-            statement.setString(5, firstName);
-            resultSet = statement.executeQuery();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            if(this.dbConnection != null) {
-                try {
-                    System.err.println("Transaction is being rolled back");
-                    this.dbConnection.rollback();
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
+            StatementCache statements = connection != null ? connection.getStatements() : null;
+            FilmOrder order = catalogue != null ? catalogue.getOrder() : this.filmOrder.get();
+
+            for (int i = 0; i < n; ++i) {
+                if (queries[i] == null) continue;
+                long time = System.nanoTime();
+                long[] intersection = new long[1];
+                PostingList result;
+                if (queries[i].isUnsatisfiable()) {
+                    result = PostingList.EMPTY;
+                } else if (mode == ExecutionMode.COMPILED_SQL) {
+                    String key = QueryCache.canonicalKey(queries[i]);
+                    result = evaluated.get(key);
+                    if (result == null) evaluated.put(key, result = compiledRequest(statements, queries[i]));
+                } else {
+                    result = evaluateShared(queries[i], statements, catalogue, evaluated, intersection);
                 }
+                time = mode == ExecutionMode.COMPILED_SQL ? stage(Metrics.Stage.PREDICATE, time, stages[i], null)
+                                                          : predicateStages(time, intersection[0], stages[i], null);
+
+                totals[i] = result.size();
+                pages[i] = order.page(result, 0, MAX_RESULTS);
+                stage(Metrics.Stage.PAGINATION, time, stages[i], null);
             }
-        }
 
-        while(true) {
-            try {
-                assert resultSet != null;
-                if(!resultSet.next()) break;
-                else {
-                    String sql = "SELECT id_film FROM generique WHERE id_personne = " + resultSet.getInt(1);
-                    try {
-                        Statement stmt = this.dbConnection.createStatement();
-                        ResultSet rs = stmt.executeQuery(sql);
-
-                        while (rs.next())
-                            result.addLast(rs.getInt(1));
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                    }
+            if (catalogue != null) {
+                for (int i = 0; i < n; ++i) {
+                    if (queries[i] == null) continue;
+                    long time = System.nanoTime();
+                    films[i] = catalogue.getInfoFilms(pages[i]).toArray(new InfoFilm[0]);
+                    stage(Metrics.Stage.HYDRATION, time, stages[i], null);
+                }
+            } else {
+                long time = System.nanoTime();
+                PostingList.Builder union = new PostingList.Builder();
+                for (int i = 0; i < n; ++i)
+                    if (queries[i] != null) for (int id : pages[i]) union.add(id);
+                PostingList all = union.build();
+                int[] ids = new int[all.size()];
+                for (int k = 0; k < ids.length; ++k) ids[k] = all.get(k);
+                InfoFilm[] hydrated = hydrate(statements, ids, null);
+                long nanos = System.nanoTime() - time;
+
+                long pageFilms = 0;
+                for (int i = 0; i < n; ++i)
+                    if (queries[i] != null) pageFilms += pages[i].length;
+                for (int i = 0; i < n; ++i) {
+                    if (queries[i] == null) continue;
+                    films[i] = new InfoFilm[pages[i].length];
+                    for (int k = 0; k < pages[i].length; ++k)
+                        films[i][k] = hydrated[Arrays.binarySearch(ids, pages[i][k])];
+                    record(Metrics.Stage.HYDRATION, pageFilms == 0 ? 0 : nanos * pages[i].length / pageFilms, stages[i], null);
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
             }
+        } finally {
+            if (connection != null) this.pool.release(connection);
         }
 
-        return result;
+        // Responses
+        for (int i = 0; i < n; ++i) {
+            if (queries[i] == null) continue;
+            long time = System.nanoTime();
+            LinkedList<InfoFilm> page = new LinkedList<>();
+            for (InfoFilm film : films[i])
+                if (film != null) page.addLast(film);
+
+            this.metrics.getResults().record(totals[i]);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            writePage(output, new Page(page, totals[i]), 0, MAX_RESULTS);
+            byte[] response = output.toByteArray();
+            if (response.length <= queryCache.getMaxBytes()) queryCache.put(keys[i], response);
+            responses[i] = new String(response, StandardCharsets.UTF_8);
+            stage(Metrics.Stage.SERIALIZATION, time, stages[i], null);
+
+            long nanos = 0;
+            for (long stage : stages[i]) nanos += stage;
+            finish(requests.get(i), queries[i], stages[i], nanos, totals[i], false);
+        }
+        return responses;
     }
 
     /**
-     * Return a SQL request for the keyword PAYS with the name or the country code given in parameter
-     * @param name The name or country code
-     * @return A LinkedList<Integer> that contains all the idx found about the request
+     * Evaluate the groups of a Query of a batch from the most selective to the least selective according to
+     * the Statistics, like evaluateOrdered(), the groups left being skipped as soon as the intersection is empty.
+     * The predicates are taken from the ones already evaluated for the batch, and the others are evaluated
+     * in full, without probing the films left, so that the requests of the batch can share them
+     * @param query The Query, its years folded
+     * @param statements The statement cache of the connection taken by the batch, null to use the Catalogue
+     * @param catalogue The loaded catalogue, used when there is no statement cache
+     * @param evaluated The PostingList of each distinct predicate of the batch already evaluated, by canonical form
+     * @param intersectionNanos Receives in its first cell the time of the unions and the intersections of the results
+     * @return The PostingList of all the idx found about the Query
      * @author Dray Raphael
-     * @see ResultSet
-     * @see PreparedStatement
-     * @see Connection
-     * @see SQLException
-     * @see Statement
+     * @see QueryCache#canonicalRequest(Request)
      */
-    private LinkedList<Integer> PaysRequest(final String name) {
-        ResultSet resultSet = null;
-        PreparedStatement statement = null;
-        LinkedList<Integer> result = new LinkedList<>();
-
-        try {
-            if(name.length() > 2)
-                statement = this.dbConnection.prepareStatement("SELECT code " +
-                        "FROM pays " +
-                        "WHERE nom " +
-                        "LIKE '%' || replace(?, ' ', '%')");
-            else
-                statement = this.dbConnection.prepareStatement("SELECT id_film " +
-                                                                   "FROM films " +
-                                                                   "WHERE pays " +
-                                                                   "LIKE '%' || replace(?, ' ', '%')");
-
-            statement.setString(1, name);
-            resultSet = statement.executeQuery();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            if(this.dbConnection != null) {
-                try {
-                    System.err.println("Transaction is being rolled back");
-                    this.dbConnection.rollback();
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
+    private PostingList evaluateShared(final Query query, final StatementCache statements, final Catalogue catalogue,
+                                       final Map<String, PostingList> evaluated, final long[] intersectionNanos) {
+        List<List<Request>> groups = query.getGroups();
+        PostingList result = null;
+        for (int g : order(estimates(query, catalogue, null))) {
+            if (result != null && result.isEmpty()) break;
+
+            PostingList union = PostingList.EMPTY;
+            for (Request request : groups.get(g)) {
+                String key = QueryCache.canonicalRequest(request);
+                PostingList ids = evaluated.get(key);
+                if (ids == null) {
+                    long start = System.nanoTime();
+                    ids = statements != null ? evaluate(statements, request) : evaluate(catalogue, request);
+                    this.metrics.getKeyWord(request.getKeyWord()).recordSince(start);
+                    evaluated.put(key, ids);
                 }
+                long start = System.nanoTime();
+                union = union.union(ids);
+                intersectionNanos[0] += System.nanoTime() - start;
             }
-
+            long start = System.nanoTime();
+            result = result == null ? union : result.intersect(union);
+            intersectionNanos[0] += System.nanoTime() - start;
         }
+        return result == null ? PostingList.EMPTY : result;
+    }
 
-        while(true) {
-            try {
-                assert resultSet != null;
-                if(!resultSet.next()) break;
-                else {
-                    if(name.length() > 2) {
-                        String sql = "SELECT id_film FROM films WHERE pays = '" + resultSet.getString(1) + "'";
-                        try {
-                            Statement stmt = this.dbConnection.createStatement();
-                            ResultSet rs = stmt.executeQuery(sql);
-
-                            while (rs.next())
-                                result.addLast(rs.getInt(1));
-                        } catch (SQLException e) {
-                            e.printStackTrace();
-                        }
-                    }
+    /**
+     * Explain the search of the request: the request is executed as retrouve() would do it, without the QueryCache,
+     * and the films are replaced by the explanation of the search
+     * @param str The Request
+     * @return The JSON written by explique(String, int, int, OutputStream), decoded from UTF-8
+     * @author Dray Raphael
+     * @see Explain
+     */
+    public String explique(final String str) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            explique(str, 0, MAX_RESULTS, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
 
-                    else while (resultSet.next())
-                        result.addLast(resultSet.getInt(1));
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
+    /**
+     * Explain the search of a page of the result of the request.
+     * The JSON Object written holds the query tree of the Analyzer, the rows, the time and the SQL statements
+     * of each predicate with their EXPLAIN QUERY PLAN, the order of the intersection of the groups,
+     * the cost of the hydration and the time of each stage, in nanoseconds.
+     * The searches explained are not counted in the Metrics
+     * @param str The Request
+     * @param offset The number of films to skip
+     * @param limit The maximum number of films, at most MAX_LIMIT
+     * @param out The stream receiving the JSON, which is flushed but not closed
+     * @throws IOException If the stream fails
+     * @throws IllegalArgumentException If the offset is negative or the limit not between 1 and MAX_LIMIT
+     * @author Dray Raphael
+     * @see Explain
+     * @see StatementTrace
+     */
+    public void explique(final String str, final int offset, final int limit, final OutputStream out) throws IOException {
+        if (offset < 0) throw new IllegalArgumentException("The offset cannot be negative");
+        if (limit < 1 || limit > MAX_LIMIT) throw new IllegalArgumentException("The limit must be between 1 and " + MAX_LIMIT);
+
+        Explain explain = new Explain(str, this.executionMode, offset, limit);
+        final long start = System.nanoTime();
+        final long[] stages = new long[STAGES];
+        String erreur = checkRequest(str);
+        if (erreur != null) {
+            explain.setErreur(erreur);
+        } else {
+            Query query = new Analyzer(str, getCountries()).getQuery().foldYears();
+            stage(Metrics.Stage.PARSE, start, stages, explain);
+            explain.setQuery(query);
+            search(query, offset, limit, stages, explain);
         }
+        stages[Metrics.Stage.RETROUVE.ordinal()] = System.nanoTime() - start;
+        explain.setStages(stages);
 
-        return result;
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        explain.writeJson(json);
+        json.finish();
     }
 
     /**
-     * Return a SQL request for the keyword EN with the release date given in parameter
-     * @param year The release date
-     * @return A LinkedList<Integer> that contains all the idx found about the request
+     * Execute a Query in the current ExecutionMode and hydrate a page of its result.
+     * Each stage is timed in the Metrics, or in the Explain when the search is explained:
+     * the statements are then traced, and their plan asked to SQLite once the search is over.
+     * The groups of a query are evaluated from the most selective to the least selective according to the Statistics,
+     * and intersected as they are evaluated, so that their time is counted in the stage PREDICATE.
+     * In the mode POSTING_LISTS, the requests of a query are evaluated by a ParallelSearch, which intersects
+     * the groups as they complete, unless the pool has a single connection or the search is explained:
+     * the explained searches are evaluated on a single connection, so that each request is timed alone.
+     * A query whose interval of years is empty is answered without reading the Database
+     * @param query The Query produced by the Analyzer, its years folded
+     * @param offset The number of films to skip
+     * @param limit The maximum number of films
+     * @param stages The time of each stage, by ordinal of Metrics.Stage, which is added to
+     * @param explain The explanation of the search, null if it is not explained
+     * @return The films of the page and the number of films found
      * @author Dray Raphael
-     * @see ResultSet
-     * @see PreparedStatement
-     * @see Connection
-     * @see SQLException
+     * @see ExecutionMode
+     * @see StatementTrace
      */
-    private LinkedList<Integer> EnRequest(final int year) {
-        ResultSet resultSet = null;
-        PreparedStatement statement;
-        LinkedList<Integer> result = new LinkedList<>();
+    private Page search(final Query query, final int offset, final int limit,
+                        final long[] stages, final Explain explain) {
+        long time = System.nanoTime();
+        if (query.isUnsatisfiable()) {
+            stage(Metrics.Stage.PREDICATE, time, stages, explain);
+            if (explain != null) explain.total(0);
+            return new Page(new LinkedList<>(), 0);
+        }
 
-        try {
-            statement = this.dbConnection.prepareStatement("SELECT id_film " +
-                                                               "FROM films " +
-                                                               "WHERE annee = ?");
-            statement.setInt(1, year);
-            resultSet = statement.executeQuery();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            if(this.dbConnection != null) {
-                try {
-                    System.err.println("Transaction is being rolled back");
-                    this.dbConnection.rollback();
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                }
+        ExecutionMode mode = this.executionMode;
+        Catalogue catalogue = mode == ExecutionMode.IN_MEMORY ? this.catalogue.get() : null;
+        if (catalogue != null) {
+            long[] intersection = new long[1];
+            PostingList result = evaluateOrdered(query, null, catalogue, explain, intersection);
+            time = predicateStages(time, intersection[0], stages, explain);
+
+            int[] ids = catalogue.getOrder().page(result, offset, limit);
+            time = stage(Metrics.Stage.PAGINATION, time, stages, explain);
+
+            LinkedList<InfoFilm> films = catalogue.getInfoFilms(ids);
+            stage(Metrics.Stage.HYDRATION, time, stages, explain);
+            if (explain != null) {
+                explain.hydration(films.size(), 0, new ArrayList<>());
+                explain.total(result.size());
             }
+            return new Page(films, result.size());
         }
 
-        while(true) {
-            try {
-                assert resultSet != null;
-                if(!resultSet.next()) break;
-                else result.addLast(resultSet.getInt(1));
-            } catch (SQLException e) {
-                e.printStackTrace();
+        ConnectionPool.PooledConnection connection = this.pool.acquire();
+        StatementCache statements = connection.getStatements();
+        if (explain != null) statements.setTrace(new StatementTrace());
+        try {
+            PostingList result;
+
+            if (mode == ExecutionMode.COMPILED_SQL) {
+                if (LOGGER.isLoggable(Level.FINE)) LOGGER.fine("Retrieving for compiled request..");
+                long start = time;
+                result = compiledRequest(statements, query);
+                time = stage(Metrics.Stage.PREDICATE, time, stages, explain);
+                if (explain != null) explain.compiled(result.size(), time - start, statements.getTrace().drain());
+            } else if (explain == null && this.parallelPredicates && this.predicateExecutor != null && query.size() > 1) {
+                ParallelSearch parallel = new ParallelSearch(query, order(estimates(query, null, null)), this.timedEvaluator);
+                result = parallel.run(statements, this.pool, this.predicateExecutor, this.pool.getSize() - 1);
+                time = predicateStages(time, parallel.getIntersectionNanos(), stages, explain);
+            } else {
+                long[] intersection = new long[1];
+                result = evaluateOrdered(query, statements, null, explain, intersection);
+                time = predicateStages(time, intersection[0], stages, explain);
             }
+
+            int[] ids = this.filmOrder.get().page(result, offset, limit);
+            time = stage(Metrics.Stage.PAGINATION, time, stages, explain);
+
+            if (LOGGER.isLoggable(Level.FINE)) LOGGER.fine("Building InfoFilm for Films..");
+            LinkedList<InfoFilm> films = getInfoFilms(statements, ids, explain);
+            stage(Metrics.Stage.HYDRATION, time, stages, explain);
+
+            if (explain != null) {
+                explain.total(result.size());
+                explain.explainPlans(connection.getConnection());
+            }
+            return new Page(films, result.size());
+        } finally {
+            statements.setTrace(null);
+            this.pool.release(connection);
         }
+    }
 
-        return result;
+    /**
+     * Record the time of a stage of a search in the times of the call, and in the Metrics
+     * unless the search is explained
+     * @param stage The stage
+     * @param start The start of the stage, given by System.nanoTime()
+     * @param stages The time of each stage of the call, by ordinal of Metrics.Stage
+     * @param explain The explanation of the search, null if it is not explained
+     * @return The end of the stage, which is the start of the next one
+     * @author Dray Raphael
+     * @see Metrics
+     */
+    private long stage(final Metrics.Stage stage, final long start, final long[] stages, final Explain explain) {
+        long end = System.nanoTime();
+        record(stage, end - start, stages, explain);
+        return end;
     }
 
     /**
-     * Return a SQL request for the keyword AVANT with the year before the release of the film given in parameter
-     * @param year The year before the release date of the film
-     * @return A LinkedList<Integer> that contains all the idx found about the request
+     * Record the evaluation of the predicates of a search, which started at start, as two stages:
+     * the unions and the intersections of their results, timed apart, as INTERSECTION, and the rest as PREDICATE
+     * @param start The start of the evaluation, given by System.nanoTime()
+     * @param intersectionNanos The time of the unions and the intersections during the evaluation
+     * @param stages The time of each stage of the call, by ordinal of Metrics.Stage
+     * @param explain The explanation of the search, null if it is not explained
+     * @return The end of the evaluation, which is the start of the next stage
      * @author Dray Raphael
-     * @see ResultSet
-     * @see PreparedStatement
-     * @see Connection
-     * @see SQLException
+     * @see Metrics.Stage#INTERSECTION
      */
-    private LinkedList<Integer> AvantRequest(final int year) {
-        ResultSet resultSet = null;
-        PreparedStatement statement;
-        LinkedList<Integer> result = new LinkedList<>();
+    private long predicateStages(final long start, final long intersectionNanos, final long[] stages, final Explain explain) {
+        long end = System.nanoTime();
+        record(Metrics.Stage.INTERSECTION, intersectionNanos, stages, explain);
+        record(Metrics.Stage.PREDICATE, end - start - intersectionNanos, stages, explain);
+        return end;
+    }
 
-        try {
-            statement = this.dbConnection.prepareStatement("SELECT id_film " +
-                                                               "FROM films " +
-                                                               "WHERE annee < ?");
-            statement.setInt(1, year);
-            resultSet = statement.executeQuery();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            if(this.dbConnection != null) {
-                try {
-                    System.err.println("Transaction is being rolled back");
-                    this.dbConnection.rollback();
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                }
-            }
-        }
+    /**
+     * Record the time of a stage in the times of the call, and in the Metrics unless the search is explained.
+     * The time may be a share of a stage, like the hydration shared by the requests of a batch
+     * @param stage The stage
+     * @param nanos The time of the stage
+     * @param stages The time of each stage of the call, by ordinal of Metrics.Stage
+     * @param explain The explanation of the search, null if it is not explained
+     * @author Dray Raphael
+     * @see #stage(Metrics.Stage, long, long[], Explain)
+     */
+    private void record(final Metrics.Stage stage, final long nanos, final long[] stages, final Explain explain) {
+        stages[stage.ordinal()] += nanos;
+        if (explain == null) this.metrics.getStage(stage).record(nanos);
+    }
 
-        while(true) {
-            try {
-                assert resultSet != null;
-                if(!resultSet.next()) break;
-                else result.addLast(resultSet.getInt(1));
-            } catch (SQLException e) {
-                e.printStackTrace();
+    /**
+     * Evaluate the groups of a Query, on the Database or on the in-memory Catalogue, from the most selective
+     * to the least selective according to the Statistics, and intersect them as they are evaluated.
+     * On the Database, the requests of a group are probed against the films left by the groups already intersected
+     * when there are less of them than the films estimated for the request, and the groups left are skipped
+     * as soon as the intersection is empty.
+     * Each evaluation is timed in the Histogram of its KeyWord, or in the Explain with the statements it executed
+     * @param query The Query produced by the Analyzer, its years folded
+     * @param statements The statement cache of the connection taken by the search, null to use the Catalogue
+     * @param catalogue The loaded catalogue, used when there is no statement cache
+     * @param explain The explanation of the search, null if it is not explained
+     * @param intersectionNanos Receives in its first cell the time of the unions and the intersections of the results
+     * @return The PostingList of all the idx found about the Query
+     * @author Dray Raphael
+     * @see Statistics
+     * @see #evaluate(StatementCache, Request, PostingList)
+     */
+    private PostingList evaluateOrdered(final Query query, final StatementCache statements, final Catalogue catalogue,
+                                        final Explain explain, final long[] intersectionNanos) {
+        List<List<Request>> groups = query.getGroups();
+        long[][] requestEstimates = new long[groups.size()][];
+        long[] estimates = estimates(query, catalogue, requestEstimates);
+        int[] order = order(estimates);
+        long[] groupRows = new long[groups.size()];
+        Arrays.fill(groupRows, -1);
+
+        PostingList result = null;
+        for (int g : order) {
+            if (result != null && result.isEmpty()) break;
+
+            PostingList union = PostingList.EMPTY;
+            for (int r = 0; r < groups.get(g).size(); ++r) {
+                Request request = groups.get(g).get(r);
+                PostingList candidates = statements != null && result != null
+                                         && result.size() < requestEstimates[g][r] && probes(request, result)
+                                         ? result : null;
+                long start = System.nanoTime();
+                PostingList ids = statements != null ? evaluate(statements, request, candidates) : evaluate(catalogue, request);
+                long nanos = System.nanoTime() - start;
+                if (explain == null)
+                    this.metrics.getKeyWord(request.getKeyWord()).record(nanos);
+                else
+                    explain.predicate(g, request, requestEstimates[g][r], candidates == null ? -1 : candidates.size(),
+                                      ids.size(), nanos,
+                                      statements != null ? statements.getTrace().drain() : new ArrayList<>());
+                start = System.nanoTime();
+                union = union.union(ids);
+                intersectionNanos[0] += System.nanoTime() - start;
             }
+            groupRows[g] = union.size();
+            long start = System.nanoTime();
+            result = result == null ? union : result.intersect(union);
+            intersectionNanos[0] += System.nanoTime() - start;
         }
+        if (result == null) result = PostingList.EMPTY;
 
+        if (explain != null) explain.intersection(estimates, groupRows, order, result.size());
         return result;
     }
 
     /**
-     * Return a SQL request for the keyword APRES with the year after the release of the film given in parameter
-     * @param year The year after the release date of the film
-     * @return A LinkedList<Integer> that contains all the idx found about the request
+     * Estimate the number of films of each group of a Query: the sum of the films estimated for its requests
+     * @param query The Query produced by the Analyzer
+     * @param catalogue The loaded catalogue whose indexes give the estimates, null to use the ones of the Database
+     * @param requestEstimates Receives the films estimated for each request, by group, if it is not null
+     * @return The number of films estimated for each group
      * @author Dray Raphael
-     * @see ResultSet
-     * @see PreparedStatement
-     * @see Connection
-     * @see SQLException
+     * @see #estimate(Request, Catalogue)
      */
-    private LinkedList<Integer> ApresRequest(final int year) {
-        ResultSet resultSet = null;
-        PreparedStatement statement;
-        LinkedList<Integer> result = new LinkedList<>();
-
-        try {
-            statement = this.dbConnection.prepareStatement("SELECT id_film " +
-                                                               "FROM films " +
-                                                               "WHERE annee > ?");
-            statement.setInt(1, year);
-            resultSet = statement.executeQuery();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            if(this.dbConnection != null) {
-                try {
-                    System.err.println("Transaction is being rolled back");
-                    this.dbConnection.rollback();
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                }
+    private long[] estimates(final Query query, final Catalogue catalogue, final long[][] requestEstimates) {
+        List<List<Request>> groups = query.getGroups();
+        long[] estimates = new long[groups.size()];
+        for (int g = 0; g < groups.size(); ++g) {
+            long[] requests = new long[groups.get(g).size()];
+            for (int r = 0; r < requests.length; ++r) {
+                requests[r] = estimate(groups.get(g).get(r), catalogue);
+                estimates[g] += requests[r];
             }
+            if (requestEstimates != null) requestEstimates[g] = requests;
         }
+        return estimates;
+    }
 
-        while(true) {
-            try {
-                assert resultSet != null;
-                if(!resultSet.next()) break;
-                else result.addLast(resultSet.getInt(1));
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
+    /**
+     * Estimate the number of films of a request without evaluating it: exactly from the indexes of the names,
+     * of the countries and of the years, from the frequency of its words for TITRE.
+     * The in-memory Catalogue has its own indexes, so that the mode IN_MEMORY does not read the Database;
+     * it has no statistics of the words, and its TITRE scans all the films whatever the value,
+     * so a request TITRE is estimated as the whole catalogue
+     * @param request The request
+     * @param catalogue The loaded catalogue whose indexes give the estimate, null to use the ones of the Database
+     * @return The number of films estimated
+     * @author Dray Raphael
+     * @see Statistics
+     * @see Catalogue
+     */
+    private long estimate(final Request request, final Catalogue catalogue) {
+        switch (request.getKeyWord()) {
+            case TITRE:
+                return catalogue != null ? catalogue.size() : this.statistics.get().titre(request.getValue());
+            case REALISATEUR:
+            case ACTEUR:
+                NameIndex names = catalogue != null ? catalogue.getNames() : this.nameIndex.get();
+                return names.count(request.getKeyWord(), request.getValue());
+            case PAYS:
+                CountryDictionary countries = catalogue != null ? catalogue.getCountries() : this.countries.get();
+                return countries.count(request.getCodes() != null ? request.getCodes() : countries.resolve(request.getValue()));
+            case DATE:
+            case AVANT:
+            case APRES:
+                return catalogue != null ? catalogue.countAnnees(request.getMinYear(), request.getMaxYear())
+                                         : this.years.get().count(request.getMinYear(), request.getMaxYear());
+            default:
+                return 0;
         }
+    }
 
+    /**
+     * @param estimates The number of films estimated for each group of a Query
+     * @return The groups, from the one with the fewest films to the one with the most, in the order of the query if equal
+     */
+    private static int[] order(final long[] estimates) {
+        Integer[] order = new Integer[estimates.length];
+        for (int g = 0; g < order.length; ++g) order[g] = g;
+        Arrays.sort(order, (a, b) -> Long.compare(estimates[a], estimates[b]));
+        int[] result = new int[order.length];
+        for (int g = 0; g < order.length; ++g) result[g] = order[g];
         return result;
     }
 
     /**
-     * Static Method that determine the common elements between two linked lists
-     * (Intersection of two linked list) of integers and
-     * return those elements as a Linked List of Integer
-     * @param results The result of all the SQL request done
-     * @return A LinkedList<Integer> that contains all the idx that they need to be evaluate to get their InfoFilm
+     * Check the syntax of a request before giving it to the Analyzer
+     * @param str The Request
+     * @return The error message, null if the request is valid
      * @author Dray Raphael
-     * @see LinkedList
      */
-    private static LinkedList<Integer> getCommonId(LinkedList<LinkedList<Integer>> results) {
-        LinkedList<Integer> result = new LinkedList<>();
-        LinkedList<Integer> tempResult = results.getFirst();
+    private static String checkRequest(final String str) {
+        String[] verification = str.split(" ");
 
-        if(results.size() > 1) {
-            for (int i = 1; i < results.size(); ++i)
-                for (int id : tempResult) {
-                    for (int id2 : results.get(i))
-                        if (id == id2 && !result.contains(id)) result.addLast(id);
+        if(verification.length < 2)
+            return "Vous devez entrer au moins deux arguments !";
 
-                    tempResult = result;
-                }
+        else if(verification[0].equals("OU"))
+            return "Vous ne pouvez pas commencer une requete par OU";
 
-            return result;
-        }
+        else if(isKeyword(verification[verification.length - 1]))
+            return "La recherche ne peut pas se terminer par un mot-clef !";
 
-        else return tempResult;
+        for(int i = 1; i < verification.length; ++i)
+            if(isKeyword(verification[i - 1]) && isKeyword(verification[i]))
+                return "Vous ne pouvez pas associer deux mot-clefs excepté OU";
+
+        return null;
     }
 
     /**
-     * Return a SQL request to get the title of the film from its id
-     * @param id The id_film
-     * @return The title of the film
+     * Execute a bound statement whose first column is an id_film and add the ids to the builder.
+     * The ResultSet is closed before returning, the statement stays open in the cache
+     * @param statement The bound statement
+     * @param result The builder of the PostingList
+     * @return The builder given in parameter
+     * @throws SQLException If the statement cannot be executed
      * @author Dray Raphael
-     * @see Statement
-     * @see Connection
+     * @see PostingList
      * @see ResultSet
-     * @see SQLException
-     * @see RuntimeException
      */
-    private String getTitre(int id) {
-        String sql = "SELECT titre FROM films WHERE id_film = " + id;
-        try {
-            Statement stmt = this.dbConnection.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-            return rs.getString(1);
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private static PostingList.Builder collectIds(final PreparedStatement statement,
+                                                  final PostingList.Builder result) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next())
+                result.add(resultSet.getInt(1));
         }
+        return result;
+    }
 
-        throw new RuntimeException("Cannot Be Reached !");
+    /**
+     * Evaluate an individual request produced by the Analyzer on the in-memory Catalogue
+     * @param catalogue The loaded catalogue
+     * @param request The request
+     * @return The PostingList of all the idx found about the request
+     * @author Dray Raphael
+     * @see Catalogue
+     */
+    private static PostingList evaluate(final Catalogue catalogue, final Request request) {
+        switch (request.getKeyWord()) {
+            case TITRE:
+                return catalogue.titre(request.getValue());
+            case REALISATEUR:
+            case ACTEUR:
+                return catalogue.personne(request.getKeyWord(), request.getValue());
+            case PAYS:
+                return catalogue.pays(request.getCodes() != null ? request.getCodes()
+                                                                 : catalogue.getCountries().resolve(request.getValue()));
+            case DATE:
+            case AVANT:
+            case APRES:
+                return catalogue.annees(request.getMinYear(), request.getMaxYear());
+            default:
+                return PostingList.EMPTY;
+        }
     }
 
     /**
-     * Return a SQL request to get the country of the film from its id
-     * @param id The id_film
-     * @return The country of the film
+     * Execute the whole request as the single SQL statement built by the QueryCompiler.
+     * All the ids are retrieved, so that the result can be counted and ordered
+     * @param statements The statement cache of the connection taken by the search
+     * @param query The Query produced by the Analyzer
+     * @return The PostingList of all the idx found about the request
      * @author Dray Raphael
-     * @see Statement
+     * @see QueryCompiler
+     * @see PreparedStatement
      * @see ResultSet
-     * @see Connection
      * @see SQLException
-     * @see RuntimeException
      */
-    private String getPays(int id) {
-        String sqlCodePays = "SELECT pays FROM films WHERE id_film = " + id;
+    private PostingList compiledRequest(final StatementCache statements, final Query query) {
+        QueryCompiler.CompiledQuery compiled = this.compiler.compile(query, this.nameIndex.get(), this.countries.get());
+        PostingList.Builder result = new PostingList.Builder();
+
         try {
-            Statement stmt = this.dbConnection.createStatement();
-            ResultSet rs = stmt.executeQuery(sqlCodePays);
+            PreparedStatement statement = statements.get(compiled.getSql());
+            compiled.bind(statement);
+            collectIds(statement, result);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Compiled request failed: " + compiled.getSql(), e);
+        }
 
-            String sqlPays = "SELECT nom FROM pays WHERE code = '" + rs.getString(1) + "'";
-            Statement stmt2 = this.dbConnection.createStatement();
-            ResultSet rs2 = stmt2.executeQuery(sqlPays);
+        return result.build();
+    }
 
-            return rs2.getString(1);
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Evaluate an individual request produced by the Analyzer
+     * by calling the SQL request of its keyword
+     * @param statements The statement cache of the connection taken by the search
+     * @param request The request
+     * @return The PostingList of all the idx found about the request
+     * @author Dray Raphael
+     * @see Analyzer
+     * @see PostingList
+     */
+    private PostingList evaluate(final StatementCache statements, final Request request) {
+        if (LOGGER.isLoggable(Level.FINE)) LOGGER.fine("Retrieving for " + request.getKeyWord() + " keyword..");
+        switch (request.getKeyWord()) {
+            case TITRE:
+                return TitreRequest(statements, request.getValue());
+            case REALISATEUR:
+            case ACTEUR:
+                return DeAvecRequest(request.getKeyWord(), request.getValue());
+            case PAYS:
+                return PaysRequest(request);
+            case DATE:
+            case AVANT:
+            case APRES:
+                return AnneesRequest(request);
+            default:
+                return PostingList.EMPTY;
         }
+    }
 
-        throw new RuntimeException("Cannot Be Reached !");
+    /**
+     * Evaluate an individual request produced by the Analyzer, knowing that only the candidates given in parameter
+     * will be kept: the years are then filtered on the index of the years, and the titles probed by a SQL request
+     * restricted to the candidates, when there are at most MAX_PROBED_CANDIDATES of them.
+     * The other requests are evaluated in full
+     * @param statements The statement cache of the connection taken by the search
+     * @param request The request
+     * @param candidates The films left by the groups already intersected, null to evaluate the request in full
+     * @return The PostingList of the idx found about the request, or of the candidates found when they were probed
+     * @author Dray Raphael
+     * @see #evaluate(StatementCache, Request)
+     */
+    private PostingList evaluate(final StatementCache statements, final Request request, final PostingList candidates) {
+        if (candidates == null || !probes(request, candidates))
+            return evaluate(statements, request);
+        if (Request.isYear(request.getKeyWord()))
+            return this.years.get().filter(candidates, request.getMinYear(), request.getMaxYear());
+        return TitreProbeRequest(statements, request.getValue(), candidates);
     }
 
     /**
-     * Return a SQL request to get the release date of the film from its id
-     * @param id The id_film
-     * @return The release date of the film
+     * Tell whether the request given in parameter is evaluated only on the candidates:
+     * the years always are, the titles when there are at most MAX_PROBED_CANDIDATES candidates
+     * @param request The request
+     * @param candidates The films left by the groups already intersected
+     * @return true if the request is probed on the candidates, false if it is evaluated in full
+     * @author Dray Raphael
+     * @see #evaluate(StatementCache, Request, PostingList)
+     */
+    private static boolean probes(final Request request, final PostingList candidates) {
+        return Request.isYear(request.getKeyWord())
+               || request.getKeyWord() == KeyWord.TITRE && candidates.size() <= MAX_PROBED_CANDIDATES;
+    }
+
+    /**
+     * Return a SQL request for the keyword TITRE with the name given in parameter:
+     * the words of the name must appear in this order in the title or in an other title,
+     * anywhere in a word, the case of the ASCII letters being ignored like LIKE ignores it
+     * @param statements The statement cache of the connection taken by the search
+     * @param name The title of the film that we are searching for
+     * @return The PostingList of all the idx found about the request
      * @author Dray Raphael
-     * @see Statement
-     * @see Connection
      * @see ResultSet
+     * @see PreparedStatement
+     * @see Connection
      * @see SQLException
-     * @see RuntimeException
      */
-    private int getAnnee(int id) {
-        String sql = "SELECT annee FROM films WHERE id_film = " + id;
-        try {
-            Statement stmt = this.dbConnection.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
+    private PostingList TitreRequest(final StatementCache statements, final String name) {
+        PostingList.Builder result = new PostingList.Builder();
 
-            return rs.getInt(1);
+        try {
+            PreparedStatement statement = statements.get(SQL_TITRE_LIKE);
+            statement.setString(1, name);
+            statement.setString(2, name);
+            collectIds(statement, result);
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.log(Level.WARNING, "Request TITRE " + name + " failed", e);
         }
 
-        throw new RuntimeException("Cannot Be Reached !");
+        return result.build();
     }
 
     /**
-     * Return a SQL request to get the time of the film from its id
-     * @param id The id_film
-     * @return The time of the film
+     * Return the candidates matching the keyword TITRE with the name given in parameter.
+     * The LIKE of TitreRequest() is only checked on the candidates, found by their primary key
+     * @param statements The statement cache of the connection taken by the search
+     * @param name The title of the film that we are searching for
+     * @param candidates The films to probe
+     * @return The PostingList of the candidates found
      * @author Dray Raphael
-     * @see Statement
-     * @see Connection
-     * @see ResultSet
-     * @see SQLException
-     * @see RuntimeException
+     * @see #TitreRequest(StatementCache, String)
      */
-    private int getDuree(int id) {
-        String sql = "SELECT duree FROM films WHERE id_film = " + id;
-        try {
-            Statement stmt = this.dbConnection.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
+    private PostingList TitreProbeRequest(final StatementCache statements, final String name, final PostingList candidates) {
+        String ids = Arrays.toString(candidates.toArray());
+        PostingList.Builder result = new PostingList.Builder();
 
-            return rs.getInt(1);
+        try {
+            PreparedStatement statement = statements.get(SQL_TITRE_LIKE_PROBE);
+            statement.setString(1, ids);
+            statement.setString(2, name);
+            statement.setString(3, ids);
+            statement.setString(4, name);
+            collectIds(statement, result);
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOGGER.log(Level.WARNING, "Probe of the request TITRE " + name + " failed", e);
         }
 
-        throw new RuntimeException("Cannot Be Reached !");
+        return result.build();
     }
 
     /**
-     * Return a SQL request to get the other titles of the film from its id
-     * @param id The id_film
-     * @return The other titles of the film
+     * Return the films of the keyword AVEC or DE with the name given in parameter,
+     * resolved by the index of the names without SQL: the films directed by the person for DE,
+     * the films in which the person acts for AVEC
+     * @param keyWord The KeyWord of the request, REALISATEUR or ACTEUR
+     * @param name The name of the actor or director, compared without accents nor case
+     * @return The PostingList of all the idx found about the request
      * @author Dray Raphael
-     * @see ArrayList
-     * @see Statement
-     * @see ResultSet
-     * @see Connection
-     * @see SQLException
+     * @see NameIndex
      */
-    private ArrayList<String> getAutresTitres(int id) {
-        ArrayList<String> autresTitres = new ArrayList<>();
-        String sql = "SELECT titre FROM autres_titres WHERE id_film = " + id;
-        try {
-            Statement stmt = this.dbConnection.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
+    private PostingList DeAvecRequest(final KeyWord keyWord, final String name) {
+        return this.nameIndex.get().films(keyWord, name);
+    }
 
-            while (rs.next())
-                autresTitres.add(rs.getString(1));
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Return the films of the keyword PAYS, from the codes resolved by the Analyzer,
+     * or resolved now if the request was analyzed without the dictionary
+     * @param request The request PAYS
+     * @return The PostingList of all the idx found about the request
+     * @author Dray Raphael
+     * @see CountryDictionary
+     */
+    private PostingList PaysRequest(final Request request) {
+        CountryDictionary countries = this.countries.get();
+        return countries.films(request.getCodes() != null ? request.getCodes() : countries.resolve(request.getValue()));
+    }
 
-        return autresTitres;
+    /**
+     * Return the films matching the keyword EN, AVANT or APRES, or an interval of years folded from them,
+     * as a slice of the index of the years
+     * @param request The request over the years
+     * @return The PostingList of all the idx found about the request
+     * @author Dray Raphael
+     * @see YearIndex
+     * @see Query#foldYears()
+     */
+    private PostingList AnneesRequest(final Request request) {
+        return this.years.get().range(request.getMinYear(), request.getMaxYear());
     }
 
     /**
-     * Return a SQL request to get the NomPersonne object from its id
-     * @param id The d_personne
-     * @return An object {NomPersonne}
+     * Hydrate in a handful of set-based queries all the films whose id is given in parameter.
+     * The films already in the FilmCache are taken from it, the others are processed
+     * by chunks of HYDRATION_CHUNK so that each chunk costs one query for the films and their country,
+     * one for the other titles and one for the cast, whatever the number of films or persons involved.
+     * The number of films found in the FilmCache and the statements executed are recorded in the Explain
+     * @param statements The statement cache of the connection taken by the search
+     * @param ids The id_film to hydrate, the films are returned in the order of the list
+     * @param explain The explanation of the search, null if it is not explained
+     * @return The information over the films, in the same order than ids (unknown ids are skipped)
      * @author Dray Raphael
-     * @see NomPersonne
-     * @see Statement
-     * @see Connection
+     * @see InfoFilm
+     * @see Explain
+     * @see PreparedStatement
      * @see ResultSet
      * @see SQLException
-     * @see RuntimeException
      */
-    private NomPersonne getNomPersonne(int id) {
-        String sql = "SELECT nom, prenom FROM personnes WHERE id_personne = " + id;
-        try {
-            Statement stmt = this.dbConnection.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
+    private LinkedList<InfoFilm> getInfoFilms(final StatementCache statements, final int[] ids, final Explain explain) {
+        LinkedList<InfoFilm> films = new LinkedList<>();
+        for (InfoFilm film : hydrate(statements, ids, explain))
+            if (film != null) films.addLast(film);
+        return films;
+    }
 
-            return new NomPersonne(rs.getString(1), rs.getString(2));
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Hydrate the films whose id is given in parameter, taking first the ones of the FilmCache
+     * @param statements The statement cache of the connection taken by the search
+     * @param ids The id_film to hydrate
+     * @param explain The explanation of the search, null if it is not explained
+     * @return The information over the film of each id, null for the unknown ids
+     * @author Dray Raphael
+     * @see #getInfoFilms(StatementCache, int[], Explain)
+     */
+    private InfoFilm[] hydrate(final StatementCache statements, final int[] ids, final Explain explain) {
+        FilmCache filmCache = this.filmCache;
+        InfoFilm[] cached = new InfoFilm[ids.length];
+        PostingList.Builder missing = new PostingList.Builder();
+        for (int i = 0; i < ids.length; ++i) {
+            cached[i] = filmCache.get(ids[i]);
+            if (cached[i] == null) missing.add(ids[i]);
+        }
+
+        PostingList toHydrate = missing.build();
+        CountryDictionary countries = toHydrate.isEmpty() ? null : this.countries.get();
+        HashMap<Integer, InfoFilm> hydrated = new HashMap<>(toHydrate.size() * 2);
+
+        for (int from = 0; from < toHydrate.size(); from += HYDRATION_CHUNK) {
+            int to = Math.min(from + HYDRATION_CHUNK, toHydrate.size());
+            int bucket = placeholderBucket(to - from);
+            String in = placeholders(bucket);
+            HashMap<Integer, FilmRow> rows = new HashMap<>((to - from) * 2);
+            boolean complete = false;
+
+            try {
+                PreparedStatement statement = statements.get(String.format(SQL_HYDRATE_FILMS, in));
+                bindIds(statement, toHydrate, from, to, bucket);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        String pays = countries.nom(rs.getString(5));
+                        rows.put(rs.getInt(1), new FilmRow(rs.getString(2), rs.getInt(3), rs.getInt(4), pays == null ? "" : pays));
+                    }
+                }
+
+                statement = statements.get(String.format(SQL_HYDRATE_AUTRES_TITRES, in));
+                bindIds(statement, toHydrate, from, to, bucket);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        FilmRow row = rows.get(rs.getInt(1));
+                        if (row != null) row.autresTitres.add(rs.getString(2));
+                    }
+                }
+
+                statement = statements.get(String.format(SQL_HYDRATE_GENERIQUE, in));
+                bindIds(statement, toHydrate, from, to, bucket);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        FilmRow row = rows.get(rs.getInt(1));
+                        if (row == null) continue;
+                        NomPersonne nom = new NomPersonne(rs.getString(3), rs.getString(4));
+                        switch (rs.getString(2)) {
+                            case "R":
+                                row.realisateurs.add(nom);
+                                break;
+                            case "A":
+                                row.acteurs.add(nom);
+                                break;
+                        }
+                    }
+                }
+                complete = true;
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Hydration of " + (to - from) + " films failed", e);
+            }
+
+            for (Map.Entry<Integer, FilmRow> row : rows.entrySet()) {
+                InfoFilm film = row.getValue().toInfoFilm();
+                hydrated.put(row.getKey(), film);
+                if (complete) filmCache.put(row.getKey(), film, row.getValue().estimatedBytes());
+            }
+        }
+
+        int found = 0;
+        for (int i = 0; i < ids.length; ++i) {
+            if (cached[i] == null) cached[i] = hydrated.get(ids[i]);
+            if (cached[i] != null) found++;
         }
 
-        throw new RuntimeException("Cannot Be Reached !");
+        if (explain != null)
+            explain.hydration(found, ids.length - toHydrate.size(), statements.getTrace().drain());
+        return cached;
     }
 
     /**
-     * Return a SQL request to get the directors of the film from its id
-     * @param id The id_film
-     * @return The directors of the film
+     * Build the list of the placeholders of a SQL "IN (...)" clause
+     * @param count The number of placeholders
+     * @return A String like "?,?,?"
      * @author Dray Raphael
-     * @see ArrayList
-     * @see NomPersonne
-     * @see Statement
-     * @see Connection
-     * @see ResultSet
-     * @see SQLException
      */
-    private ArrayList<NomPersonne> getRealisateurs(int id) {
-        ArrayList<NomPersonne> realisateurs = new ArrayList<>();
-        String sql = "SELECT id_personne FROM generique WHERE id_film = " + id + " AND role = 'R'";
-        try {
-            Statement stmt = this.dbConnection.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-
-            while (rs.next())
-                realisateurs.add(getNomPersonne(rs.getInt(1)));
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private static String placeholders(final int count) {
+        StringBuilder sb = new StringBuilder(count * 2);
+        for (int i = 0; i < count; ++i) {
+            if (i > 0) sb.append(',');
+            sb.append('?');
         }
+        return sb.toString();
+    }
 
-        return realisateurs;
+    /**
+     * Number of placeholders used for an "IN (...)" clause of count ids:
+     * the next power of two, so that only a few statement shapes are compiled and cached
+     * @param count The number of ids to bind
+     * @return The number of placeholders, between count and HYDRATION_CHUNK
+     * @author Dray Raphael
+     */
+    private static int placeholderBucket(final int count) {
+        int bucket = 8;
+        while (bucket < count) bucket <<= 1;
+        return Math.min(bucket, HYDRATION_CHUNK);
     }
 
     /**
-     * Return a SQL request to get the actors of the film from its id
-     * @param id The id_film
-     * @return The actors of the film
+     * Bind a range of the ids given in parameter to the placeholders of the statement, starting at the first one.
+     * The remaining placeholders are bound to -1, which is not an id_film
+     * @param statement The statement to bind
+     * @param ids The ids to bind
+     * @param from The position of the first id to bind, inclusive
+     * @param to The position of the last id to bind, exclusive
+     * @param placeholders The number of placeholders of the statement
+     * @throws SQLException If a parameter cannot be bound
      * @author Dray Raphael
-     * @see ArrayList
-     * @see NomPersonne
-     * @see Statement
-     * @see Connection
-     * @see ResultSet
-     * @see SQLException
+     * @see PreparedStatement
      */
-    private ArrayList<NomPersonne> getActeurs(int id) {
-        ArrayList<NomPersonne> acteurs = new ArrayList<>();
-        String sql = "SELECT id_personne FROM generique WHERE id_film = " + id + " AND role = 'A'";
-        try {
-            Statement stmt = this.dbConnection.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
+    private static void bindIds(final PreparedStatement statement, final PostingList ids,
+                                final int from, final int to, final int placeholders) throws SQLException {
+        int index = 1;
+        for (int i = from; i < to; ++i) statement.setInt(index++, ids.get(i));
+        while (index <= placeholders) statement.setInt(index++, -1);
+    }
 
-            while (rs.next())
-                acteurs.add(getNomPersonne(rs.getInt(1)));
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Reading of a structure from the Database
+     * @param <T> The structure read
+     */
+    private interface Loader<T> {
+        T load(Connection connection, long generation) throws SQLException;
+    }
+
+    /**
+     * Structure read from the Database the first time it is needed, and read again the first time it is needed
+     * after the Database file has changed. It is read on a connection of its own, the connections of the pool
+     * being busy with the statements of the searches. If it cannot be read again, the failure is logged once
+     * and the previous structure is kept until the Database file changes again
+     * @param <T> The structure read
+     * @author Dray Raphael
+     * @see DatabaseWatcher
+     */
+    private final class Reloadable<T> {
+        private final String name;
+        private final Loader<T> loader;
+        private volatile T value;
+        private volatile long generation = -1;
+
+        private Reloadable(final String name, final Loader<T> loader) {
+            this.name = name;
+            this.loader = loader;
         }
 
-        return acteurs;
+        /**
+         * @return The structure read from the current generation of the Database file,
+         * or the previous one if it cannot be read again
+         * @throws RuntimeException If the structure has never been read and cannot be
+         */
+        private T get() {
+            long generation = watcher.getGeneration();
+            if (this.generation == generation) return this.value;
+
+            synchronized (this) {
+                if (this.generation == generation) return this.value;
+                long start = System.nanoTime();
+                try (Connection connection = connect(SQLiteFilename)) {
+                    this.value = this.loader.load(connection, generation);
+                    LOGGER.info(this.name + " read in " + (System.nanoTime() - start) / 1000000 + "ms");
+                } catch (SQLException | RuntimeException e) {
+                    if (this.value == null) throw new RuntimeException(e);
+                    LOGGER.log(Level.WARNING, this.name + " cannot be read again, the previous one is kept", e);
+                }
+                this.generation = generation;
+                return this.value;
+            }
+        }
     }
 
     /**
-     * Instance a new InfoFilm from its constructor
-     * giving all the accessors to the data in parameter
-     * which it need from the id of the film
-     * @param id The id_film
-     * @return The information over the film
+     * Row of a film being hydrated, filled by the set-based queries of getInfoFilms
+     * before being turned into an InfoFilm
      * @author Dray Raphael
      * @see InfoFilm
      */
-    private InfoFilm getInfoFilm(int id) {
-        return new InfoFilm(getTitre(id),
-                            getRealisateurs(id),
-                            getActeurs(id),
-                            getPays(id),
-                            getAnnee(id),
-                            getDuree(id),
-                            getAutresTitres(id));
+    private static final class FilmRow {
+        private final String titre;
+        private final int annee;
+        private final int duree;
+        private final String pays;
+        private final ArrayList<NomPersonne> realisateurs = new ArrayList<>();
+        private final ArrayList<NomPersonne> acteurs = new ArrayList<>();
+        private final ArrayList<String> autresTitres = new ArrayList<>();
+
+        private FilmRow(final String titre, final int annee, final int duree, final String pays) {
+            this.titre = titre;
+            this.annee = annee;
+            this.duree = duree;
+            this.pays = pays;
+        }
+
+        private InfoFilm toInfoFilm() {
+            return new InfoFilm(this.titre, this.realisateurs, this.acteurs, this.pays,
+                                this.annee, this.duree, this.autresTitres);
+        }
+
+        /**
+         * Estimation of the memory used by the InfoFilm built from the row,
+         * counting two bytes per character and a fixed overhead per object
+         * @return The estimated number of bytes
+         */
+        private int estimatedBytes() {
+            int bytes = 96 + stringBytes(this.titre) + stringBytes(this.pays);
+            for (NomPersonne nom : this.realisateurs) bytes += 48 + stringBytes(nom.toString());
+            for (NomPersonne nom : this.acteurs) bytes += 48 + stringBytes(nom.toString());
+            for (String titre : this.autresTitres) bytes += 8 + stringBytes(titre);
+            return bytes;
+        }
+
+        private static int stringBytes(final String s) {
+            return s == null ? 0 : 40 + 2 * s.length();
+        }
+    }
+
+    /**
+     * Page of the result of a search: the films hydrated and the number of films found
+     * @author Dray Raphael
+     */
+    private static final class Page {
+        private final LinkedList<InfoFilm> films;
+        private final int total;
+
+        private Page(final LinkedList<InfoFilm> films, final int total) {
+            this.films = films;
+            this.total = total;
+        }
+    }
+
+    /**
+     * Stream forwarding the bytes written to another stream, and keeping a copy of them
+     * as long as they do not exceed a limit, so that a response can be cached while it is streamed
+     * @author Dray Raphael
+     * @see QueryCache
+     */
+    private static final class RecordingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final long limit;
+        private byte[] recorded = new byte[4096];
+        private int count;
+
+        private RecordingOutputStream(final OutputStream out, final long limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.out.write(b);
+            record(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            this.out.write(b, off, len);
+            record(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+
+        /**
+         * @return The bytes written, null if they exceeded the limit
+         */
+        private byte[] getRecorded() {
+            return this.recorded == null ? null : Arrays.copyOf(this.recorded, this.count);
+        }
+
+        private void record(final byte[] b, final int off, final int len) {
+            if (this.recorded == null) return;
+            if ((long) this.count + len > this.limit) {
+                this.recorded = null;
+                return;
+            }
+            if (this.count + len > this.recorded.length)
+                this.recorded = Arrays.copyOf(this.recorded, Math.max(this.recorded.length * 2, this.count + len));
+            System.arraycopy(b, off, this.recorded, this.count, len);
+            this.count += len;
+        }
     }
 
     /**
@@ -799,7 +1628,7 @@ public class RechercheFilm {
      * @author Dray Raphael
      * @see KeyWord
      */
-    private boolean isKeyword(String s) {
+    private static boolean isKeyword(String s) {
         for(KeyWord k : KeyWord.values()) if (k.getName().equals(s)) return true;
         return false;
     }
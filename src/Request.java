@@ -1,186 +1,154 @@
 /**
- * Class that represents individual requests in our search engine.
- * This class handles all the internal treatments needed for each requests.
+ * Class that represents individual requests in our search engine: a predicate of the query tree.
+ * A request is immutable and holds its KeyWord with the value already normalized by the Analyzer,
+ * so that the search does not have to parse it again.
  *
  * @author  Raphael Dray
  * @version 1.0
+ * @see Analyzer
+ * @see Query
  */
 public class Request {
-    private String string;
-    private KeyWord keyWord;
-    private boolean isOrRequest;
+    private final KeyWord keyWord;
+    private final String value;
+    private final int minYear;
+    private final int maxYear;
+    private final String[] codes;
 
     /**
-     * Simple constructor that will initialize the KeyWord and the "or" flag of the request.
+     * Constructor of a request over a name, a title or a country, the value of PAYS being resolved
+     * to the codes of the countries.
      *
      * @author  Raphael Dray
-     * @param keyWord the KeyWord of the class.
+     * @param keyWord the KeyWord of the request.
+     * @param value the value, without punctuation, its words separated by a single space.
+     * @param codes the codes of the countries named by the value, null if it has not been resolved.
      */
-    public Request(KeyWord keyWord){
+    Request(KeyWord keyWord, String value, String[] codes) {
         this.keyWord = keyWord;
-        this.isOrRequest = false;
+        this.value = value;
+        this.minYear = 0;
+        this.maxYear = 0;
+        this.codes = codes;
     }
 
     /**
-     * Simple get function to return the KeyWord of the request
+     * Constructor of a request over a year.
      *
      * @author  Raphael Dray
-     * @return return the KeyWord of the request
+     * @param keyWord the KeyWord of the request, EN, AVANT or APRES.
+     * @param value the value as written by the user.
+     * @param year the year parsed from the value.
      */
-    public KeyWord getKeyWord() {
-        return keyWord;
-    }
-
-    /**
-     * Simple get function to return the String value of the request
-     *
-     * @author  Raphael Dray
-     * @return return the String value of the request
-     */
-    public String getString() {
-        return string;
+    Request(KeyWord keyWord, String value, int year) {
+        this.keyWord = keyWord;
+        this.value = value;
+        this.minYear = keyWord == KeyWord.AVANT ? Integer.MIN_VALUE
+                     : keyWord == KeyWord.APRES ? (year == Integer.MAX_VALUE ? year : year + 1) : year;
+        this.maxYear = keyWord == KeyWord.AVANT ? (year == Integer.MIN_VALUE ? year : year - 1)
+                     : keyWord == KeyWord.APRES ? (year == Integer.MAX_VALUE ? year - 1 : Integer.MAX_VALUE) : year;
+        this.codes = null;
     }
 
     /**
-     * Simple get function to return the "or" flag of the request
+     * Constructor of a request EN over an interval of years, folded from the requests EN, AVANT and APRES
+     * of a query: its value is the interval, like "1951..1959", an open bound being left empty, like "..1959".
      *
      * @author  Raphael Dray
-     * @return return the "or" flag of the request
+     * @param minYear the first year of the interval.
+     * @param maxYear the last year of the interval, before minYear if the interval is empty.
+     * @see Query#foldYears()
      */
-    public boolean getIsOrRequest(){
-        return isOrRequest;
+    Request(int minYear, int maxYear) {
+        this.keyWord = KeyWord.DATE;
+        this.value = minYear == maxYear ? String.valueOf(minYear)
+                   : (minYear == Integer.MIN_VALUE ? "" : String.valueOf(minYear)) + ".."
+                   + (maxYear == Integer.MAX_VALUE ? "" : String.valueOf(maxYear));
+        this.minYear = minYear;
+        this.maxYear = maxYear;
+        this.codes = null;
     }
 
     /**
-     * Simple set function to set the "or" flag of the request
+     * Simple get function to return the KeyWord of the request
      *
      * @author  Raphael Dray
-     * @param val a boolean
+     * @return return the KeyWord of the request
      */
-    public void setIsOrRequest(boolean val){
-        this.isOrRequest = val;
+    public KeyWord getKeyWord() {
+        return keyWord;
     }
 
     /**
-     * Simple set function to set the KeyWord of the request
+     * Simple get function to return the normalized String value of the request
      *
      * @author  Raphael Dray
-     * @param keyWord un KeyWord
+     * @return return the String value of the request
      */
-    private void setKeyWord(KeyWord keyWord) {
-        this.keyWord = keyWord;
+    public String getValue() {
+        return value;
     }
 
     /**
-     * Simple set function to set the String value of the request
+     * Simple get function to return the first year accepted by a request EN, AVANT or APRES
      *
      * @author  Raphael Dray
-     * @param string a String
+     * @return return the first year of the interval, Integer.MIN_VALUE for AVANT, 0 for the other KeyWords
      */
-    private void setString(String string) {
-        this.string = string;
+    public int getMinYear() {
+        return minYear;
     }
 
     /**
-     * Function that will add the given String value to the current String value of the request.
-     * Will check if string is not null first.
+     * Simple get function to return the last year accepted by a request EN, AVANT or APRES
      *
      * @author  Raphael Dray
-     * @param val a String
+     * @return return the last year of the interval, Integer.MAX_VALUE for APRES, 0 for the other KeyWords
      */
-    public void addVal(String val){
-        if (getString() != null) setString(getString() + val + " ");
-        else setString(val + " ");
+    public int getMaxYear() {
+        return maxYear;
     }
 
     /**
-     * Function that will finalize the request.
-     * Will first clean the request String value, removing unneeded punctuation and blank spaces.
-     * Will then check if the request is valid, ie: String value isn't empty and is coherent with the KeyWord.
-     * If all is correct, will return the finalized request.
+     * Simple function to know if a request over the years accepts no year at all, like "APRES 1960, AVANT 1950" once folded
      *
      * @author  Raphael Dray
-     * @return return a String value containing the finalized request with a KeyWord followed by the value.
-     * @throws InvalidRequestException if request seems to be null
+     * @return return true if the request is over a year and its interval is empty
      */
-    public String finishRequest() throws InvalidRequestException {
-        cleanStr();
-        requestIsValid();
-        return String.format("%s;%s", getKeyWord().toString(), getString());
+    public boolean isEmptyInterval() {
+        return isYear(keyWord) && minYear > maxYear;
     }
 
     /**
-     * Function that will check wether or not string contains punctuation {",",";",".",":"}.
+     * Simple get function to return the codes of the countries of a request PAYS, resolved by the Analyzer
      *
      * @author  Raphael Dray
-     * @return return a boolean, true if string contains punctuation, false if not.
-     */
-    public boolean containsPunct(){
-        String[] punct = {",", ";", ".", ":"};
-        if (this.getString() != null) for (String s : punct) if (this.getString().contains(s)) return true;
-        return false;
-    }
-
-    /**
-     * Function that will "clean" string.
-     * Removing unneeded punctuation and blank spaces.
-     *
-     * @author  Dray Raphael
+     * @return return the sorted codes, null if the value has not been resolved
+     * @see CountryDictionary
      */
-    private void cleanStr() {
-        String[] punct = {",", ";", ".", ":"};
-        String temp;
-        int index;
-
-        if (containsPunct()) do for (String s : punct) {
-            index = string.indexOf(s);
-            if (index != -1) {
-                temp = charRemoveAt(string, index);
-                if (temp != null) string = temp;
-            }
-        } while (containsPunct());
-
-        if (string.charAt(string.length() - 1) == ' ') do {
-            temp = charRemoveAt(string, string.length() - 1);
-            if (temp != null) string = temp;
-        } while (string.charAt(string.length() - 1) == ' ');
+    public String[] getCodes() {
+        return codes;
     }
 
     /**
-     * Function that will remove from the given String a character at the given index.
+     * Simple function to know if the request is over a year
      *
      * @author  Raphael Dray
-     * @param p index of the character we want removed.
-     * @param str String in which we want to remove a character.
-     * @return return the String given as parameter but with the character at the given index removed.
+     * @param keyWord a KeyWord
+     * @return return true for EN, AVANT and APRES
      */
-    private static String charRemoveAt(String str, int p) {
-        if ((null != str) && (p >= 0) && (p < str.length()))
-            return String.format("%s%s", str.substring(0, p), str.substring(p + 1));
-        return null;
+    public static boolean isYear(KeyWord keyWord) {
+        return keyWord == KeyWord.DATE || keyWord == KeyWord.AVANT || keyWord == KeyWord.APRES;
     }
 
     /**
-     * Function that will check if the request is valid or not.
-     * ie: String value isn't empty and is coherent with the KeyWord.
-     * If the request is not valid, will throw an exception. If not exception are thrown, request is valid.
+     * Print the request as the Analyzer used to produce it, a KeyWord followed by the value.
      *
      * @author  Raphael Dray
-     * @throws InvalidRequestException if request seems to be null
+     * @return return a String like "DE Hitchcock"
      */
-    private void requestIsValid() throws InvalidRequestException {
-        if (!((getString() != null) && !(getString().equals(""))))
-            throw new InvalidRequestException(String.format("Request %s is empty", getKeyWord().toString()));
-        if  (getKeyWord().toString().equals("EN") || (getKeyWord().toString().equals("AVANT")) || (getKeyWord().toString().equals("APRES"))) {
-            if (!getString().matches("[0-9]+"))
-                throw new InvalidRequestException(String.format("Request %s does not contain only numbers", getKeyWord().toString()));
-        } else {
-            int i = 0;
-            while (i < getString().length()) {
-                if ((!(Character.isLetter(getString().charAt(i)))) && (getString().charAt(i) != ' '))
-                    throw new InvalidRequestException(String.format("Request %s does not contain only letters", getKeyWord().toString()));
-                i++;
-            }
-        }
+    @Override
+    public String toString() {
+        return keyWord + " " + value;
     }
-}
\ No newline at end of file
+}
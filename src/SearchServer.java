@@ -0,0 +1,272 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP server of the searches of a RechercheFilm, built on the server of the JDK.
+ * Each exchange is handled on a virtual thread when the JVM has them, on a bounded pool of threads otherwise,
+ * and all of them share the RechercheFilm, whose pool of connections bounds the concurrent searches.
+ * The endpoints are:
+ * GET /recherche?q=DE+Hitchcock&amp;offset=0&amp;limit=100 the JSON of retrouve()
+ * GET /explique?q=...&amp;offset=0&amp;limit=100 the JSON of explique()
+ * GET /metrics the metrics in the Prometheus text format
+ * The responses have a Content-Length, so that the connections are kept alive,
+ * and are compressed with gzip from GZIP_MIN_BYTES when the client accepts it.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see RechercheFilm
+ * @see HttpServer
+ */
+public class SearchServer {
+    private static final Logger LOGGER = Logger.getLogger(SearchServer.class.getName());
+    private static final int GZIP_MIN_BYTES = 1024;
+    private static final int BACKLOG = 128;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final RechercheFilm rechercheFilm;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile boolean stopped;
+
+    /**
+     * Constructor of a server of the searches, which does not accept connections until start() is called
+     * @param rechercheFilm The RechercheFilm shared by all the exchanges
+     * @param address The address to listen to
+     * @param threads The number of threads handling the exchanges, when the virtual threads are not available
+     * @throws IOException If the address cannot be bound
+     * @author Dray Raphael
+     * @see VirtualThreads
+     */
+    public SearchServer(final RechercheFilm rechercheFilm, final InetSocketAddress address, final int threads) throws IOException {
+        this.rechercheFilm = rechercheFilm;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = VirtualThreads.newExecutor("SearchServer", threads);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/recherche", handler(this::recherche));
+        this.server.createContext("/explique", handler(this::explique));
+        this.server.createContext("/metrics", handler(this::metrics));
+    }
+
+    /**
+     * Start accepting connections
+     * @author Dray Raphael
+     */
+    public void start() {
+        this.server.start();
+        LOGGER.info("Search server listening on " + getAddress());
+    }
+
+    /**
+     * @return The address the server listens to, with the port chosen by the system if it was 0
+     */
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    /**
+     * Stop the server gracefully: stop accepting connections, let the exchanges in progress finish
+     * for at most delaySeconds, then close the RechercheFilm. Calling it again does nothing
+     * @param delaySeconds The maximum time given to the exchanges in progress
+     * @author Dray Raphael
+     * @see RechercheFilm#fermeBase()
+     */
+    public synchronized void stop(final int delaySeconds) {
+        if (this.stopped) return;
+        this.stopped = true;
+
+        this.server.stop(delaySeconds);
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.rechercheFilm.fermeBase();
+        LOGGER.info("Search server stopped");
+    }
+
+    /**
+     * Response of an endpoint, written to a buffer before being sent
+     */
+    private interface Endpoint {
+        /**
+         * @param parameters The parameters of the query string
+         * @param body The buffer receiving the body of the response
+         * @return The Content-Type of the response
+         */
+        String handle(Map<String, String> parameters, OutputStream body) throws IOException;
+    }
+
+    /**
+     * Search endpoint, parameters q, offset and limit
+     */
+    private String recherche(final Map<String, String> parameters, final OutputStream body) throws IOException {
+        this.rechercheFilm.retrouve(required(parameters, "q"), intParameter(parameters, "offset", 0),
+                                    intParameter(parameters, "limit", 100), body);
+        return JSON;
+    }
+
+    /**
+     * Explain endpoint, parameters q, offset and limit
+     */
+    private String explique(final Map<String, String> parameters, final OutputStream body) throws IOException {
+        this.rechercheFilm.explique(required(parameters, "q"), intParameter(parameters, "offset", 0),
+                                    intParameter(parameters, "limit", 100), body);
+        return JSON;
+    }
+
+    /**
+     * Metrics endpoint
+     */
+    private String metrics(final Map<String, String> parameters, final OutputStream body) throws IOException {
+        Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+        this.rechercheFilm.getMetrics().writeText(writer);
+        writer.flush();
+        return TEXT;
+    }
+
+    /**
+     * Handler of the exchanges of an endpoint: only GET and HEAD are accepted, the request body is drained,
+     * the errors of the client are answered by 400 and the others by 500, with a JSON {"erreur":"..."}
+     * @param endpoint The endpoint
+     * @return The handler
+     */
+    private HttpHandler handler(final Endpoint endpoint) {
+        return exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read() >= 0) ;
+            }
+            try {
+                String method = exchange.getRequestMethod();
+                if (!method.equals("GET") && !method.equals("HEAD")) {
+                    exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                    send(exchange, 405, JSON, erreur("Méthode " + method + " non supportée"));
+                    return;
+                }
+
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                int status = 200;
+                String contentType;
+                try {
+                    contentType = endpoint.handle(parseQuery(exchange.getRequestURI().getRawQuery()), body);
+                } catch (IllegalArgumentException e) {
+                    status = 400;
+                    contentType = JSON;
+                    body.reset();
+                    body.write(erreur(e.getMessage()));
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Search failed: " + exchange.getRequestURI(), e);
+                    status = 500;
+                    contentType = JSON;
+                    body.reset();
+                    body.write(erreur("Erreur interne"));
+                }
+                send(exchange, status, contentType, body.toByteArray());
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    /**
+     * Send a response with its Content-Length, compressed with gzip if it is large and the client accepts it
+     */
+    private static void send(final HttpExchange exchange, final int status, final String contentType,
+                             byte[] body) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", contentType);
+        headers.set("Vary", "Accept-Encoding");
+        if (body.length >= GZIP_MIN_BYTES && acceptsGzip(exchange.getRequestHeaders())) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            headers.set("Content-Encoding", "gzip");
+        }
+
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            headers.set("Content-Length", Integer.toString(body.length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return true if an Accept-Encoding of the request accepts gzip, with a non zero quality
+     */
+    private static boolean acceptsGzip(final Headers headers) {
+        for (String value : headers.getOrDefault("Accept-Encoding", Collections.emptyList()))
+            for (String encoding : value.split(",")) {
+                String e = encoding.replace(" ", "").toLowerCase();
+                if ((e.equals("gzip") || e.startsWith("gzip;")) && !e.matches("gzip;q=0(\\.0*)?"))
+                    return true;
+            }
+        return false;
+    }
+
+    private static byte[] erreur(final String message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        json.beginObject().name("erreur").value(message == null ? "" : message).endObject();
+        json.finish();
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode the parameters of a query string, the last value of a parameter being kept
+     */
+    private static Map<String, String> parseQuery(final String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return parameters;
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static String required(final Map<String, String> parameters, final String name) {
+        String value = parameters.get(name);
+        if (value == null) throw new IllegalArgumentException("Le paramètre " + name + " est obligatoire");
+        return value;
+    }
+
+    private static int intParameter(final Map<String, String> parameters, final String name, final int otherwise) {
+        String value = parameters.get(name);
+        if (value == null) return otherwise;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Le paramètre " + name + " doit être un entier");
+        }
+    }
+}
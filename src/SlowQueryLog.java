@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Opt-in log of the slow searches of a RechercheFilm, to find the pathological requests without a profiler.
+ * Every call to retrouve() slower than the threshold is written, and a sample of the faster ones,
+ * as a line of JSON holding the request as written by the user, its normalized form, the time of each stage,
+ * the number of films found and whether the response came from the QueryCache.
+ * The lines are written by a FileHandler to a rotating set of files, given by a FileHandler pattern like "slow.%g.log".
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see RechercheFilm#setSlowQueryLog(SlowQueryLog)
+ * @see FileHandler
+ */
+public class SlowQueryLog {
+    private static final int DEFAULT_LIMIT_BYTES = 10 * 1024 * 1024;
+    private static final int DEFAULT_FILES = 5;
+
+    private final FileHandler handler;
+    private final long thresholdNanos;
+    private final double sampleRate;
+
+    /**
+     * Constructor of a log rotating over DEFAULT_FILES files of DEFAULT_LIMIT_BYTES
+     * @param pattern The pattern of the files, as understood by FileHandler, like "slow.%g.log"
+     * @param thresholdMillis The latency from which every search is written, in milliseconds
+     * @param sampleRate The fraction of the faster searches written, between 0 and 1
+     * @throws IOException If the files cannot be opened
+     * @author Dray Raphael
+     */
+    public SlowQueryLog(final String pattern, final long thresholdMillis, final double sampleRate) throws IOException {
+        this(pattern, DEFAULT_LIMIT_BYTES, DEFAULT_FILES, thresholdMillis, sampleRate);
+    }
+
+    /**
+     * Constructor of a log, appending to its current file if it exists
+     * @param pattern The pattern of the files, as understood by FileHandler, like "slow.%g.log"
+     * @param limitBytes The size from which a file is rotated
+     * @param files The number of files kept
+     * @param thresholdMillis The latency from which every search is written, in milliseconds
+     * @param sampleRate The fraction of the faster searches written, between 0 and 1
+     * @throws IOException If the files cannot be opened
+     * @throws IllegalArgumentException If the threshold is negative or the rate not between 0 and 1
+     * @author Dray Raphael
+     */
+    public SlowQueryLog(final String pattern, final int limitBytes, final int files,
+                        final long thresholdMillis, final double sampleRate) throws IOException {
+        if (thresholdMillis < 0) throw new IllegalArgumentException("The threshold cannot be negative");
+        if (!(sampleRate >= 0 && sampleRate <= 1)) throw new IllegalArgumentException("The sample rate must be between 0 and 1");
+
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.sampleRate = sampleRate;
+        this.handler = new FileHandler(pattern, limitBytes, files, true);
+        this.handler.setEncoding("UTF-8");
+        this.handler.setFormatter(new Formatter() {
+            @Override
+            public String format(final LogRecord record) {
+                return record.getMessage() + System.lineSeparator();
+            }
+        });
+    }
+
+    /**
+     * @return The latency from which every search is written, in nanoseconds
+     */
+    public long getThresholdNanos() {
+        return this.thresholdNanos;
+    }
+
+    /**
+     * @return The fraction of the faster searches written
+     */
+    public double getSampleRate() {
+        return this.sampleRate;
+    }
+
+    /**
+     * Write a search if it is slower than the threshold, or if it is drawn in the sample of the faster ones
+     * @param requete The request as written by the user
+     * @param query The Query of the Analyzer, null if the request was refused
+     * @param stages The time of each Stage, in nanoseconds, by ordinal of Metrics.Stage
+     * @param nanos The time of the whole call
+     * @param total The number of films found, -1 if the response came from the QueryCache or was an error
+     * @param cached true if the response came from the QueryCache
+     * @author Dray Raphael
+     */
+    void offer(final String requete, final Query query, final long[] stages, final long nanos,
+               final int total, final boolean cached) {
+        boolean slow = nanos >= this.thresholdNanos;
+        if (!slow && (this.sampleRate == 0 || ThreadLocalRandom.current().nextDouble() >= this.sampleRate)) return;
+
+        StringWriter line = new StringWriter(256);
+        try {
+            JsonWriter json = new JsonWriter(line);
+            json.beginObject();
+            json.name("time").value(Instant.now().toString());
+            json.name("slow").value(slow);
+            json.name("nanos").value(nanos);
+            json.name("requete").value(requete);
+            if (query != null) json.name("query").value(QueryCache.canonicalKey(query));
+            if (query != null && query.getError() != null) json.name("erreur").value(query.getError());
+            json.name("cached").value(cached);
+            if (total >= 0) json.name("total").value(total);
+            json.name("stages").beginObject();
+            for (Metrics.Stage stage : Metrics.Stage.values())
+                if (stages[stage.ordinal()] != 0)
+                    json.name(stage.name().toLowerCase(Locale.ROOT)).value(stages[stage.ordinal()]);
+            json.endObject();
+            json.endObject();
+            json.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.handler.publish(new LogRecord(Level.INFO, line.toString()));
+    }
+
+    /**
+     * Flush and close the current file
+     * @author Dray Raphael
+     */
+    public void close() {
+        this.handler.close();
+    }
+}
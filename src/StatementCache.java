@@ -0,0 +1,142 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache of the pre-compiled statements of a connection, keyed by their SQL.
+ * The statements are parameterized so that one compilation serves every value searched for,
+ * and the least recently used statement is closed when the cache is full.
+ * The cache belongs to its connection and must not be shared between threads.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ */
+public class StatementCache {
+    private static final Logger LOGGER = Logger.getLogger(StatementCache.class.getName());
+
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private volatile long hits;
+    private volatile long compiles;
+    private volatile long evictions;
+    private StatementTrace trace;
+
+    /**
+     * Constructor of an empty cache over the connection given in parameter.
+     *
+     * @author  Dray Raphael
+     * @param connection The connection on which the statements are prepared
+     * @param capacity The maximum number of statements kept open
+     * @see Connection
+     */
+    public StatementCache(final Connection connection, final int capacity) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= capacity) return false;
+                evictions++;
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Return the pre-compiled statement of the SQL given in parameter, preparing it on the first call.
+     * The parameters of the statement are cleared, the ResultSet of the previous use must be closed.
+     * While a StatementTrace is set, the statement returned records its executions in the trace.
+     *
+     * @author  Dray Raphael
+     * @param sql The parameterized SQL of the statement
+     * @return The statement ready to be bound
+     * @throws SQLException If the SQL cannot be compiled
+     * @see PreparedStatement
+     */
+    public PreparedStatement get(final String sql) throws SQLException {
+        PreparedStatement statement = this.statements.get(sql);
+        if (statement != null) {
+            this.hits++;
+            statement.clearParameters();
+        } else {
+            statement = this.connection.prepareStatement(sql);
+            this.compiles++;
+            this.statements.put(sql, statement);
+        }
+        return this.trace == null ? statement : this.trace.wrap(sql, statement);
+    }
+
+    /**
+     * Record the executions of the statements of the cache in a trace, until the trace is removed
+     * @param trace The trace, null to stop recording
+     * @author Dray Raphael
+     * @see StatementTrace
+     */
+    public void setTrace(final StatementTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * @return The trace recording the executions of the statements, null if there is none
+     */
+    public StatementTrace getTrace() {
+        return this.trace;
+    }
+
+    /**
+     * Close every statement of the cache
+     * @author Dray Raphael
+     */
+    public void close() {
+        Iterator<PreparedStatement> it = this.statements.values().iterator();
+        while (it.hasNext()) {
+            closeQuietly(it.next());
+            it.remove();
+        }
+    }
+
+    /**
+     * @return The number of statements found in the cache
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return The number of statements compiled by the connection
+     */
+    public long getCompiles() {
+        return this.compiles;
+    }
+
+    /**
+     * @return The number of statements closed because the cache was full
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * @return The number of statements currently open
+     */
+    public int size() {
+        return this.statements.size();
+    }
+
+    /**
+     * Close a statement, logging the error if any
+     * @param statement The statement to close
+     */
+    private static void closeQuietly(final PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Statement cannot be closed", e);
+        }
+    }
+}
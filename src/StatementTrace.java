@@ -0,0 +1,208 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Trace of the statements executed through a StatementCache, used to explain a search.
+ * While a trace is set on the cache, its statements are wrapped by a proxy recording for each SQL
+ * the parameters bound, the number of executions, the rows read and the time spent until the ResultSet is closed.
+ * The statements are not wrapped when no trace is set, so the searches do not pay for it.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see StatementCache
+ * @see Explain
+ */
+public class StatementTrace {
+    private LinkedHashMap<String, Execution> executions = new LinkedHashMap<>();
+
+    /**
+     * Executions of one SQL since the last call to drain()
+     * @author Dray Raphael
+     */
+    public static final class Execution {
+        private final String sql;
+        private Object[] parameters = new Object[0];
+        private int executions;
+        private long rows;
+        private long nanos;
+        private List<String> plan = new ArrayList<>();
+
+        private Execution(final String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * @return The parameterized SQL
+         */
+        public String getSql() {
+            return this.sql;
+        }
+
+        /**
+         * @return The parameters bound for the last execution
+         */
+        public Object[] getParameters() {
+            return this.parameters.clone();
+        }
+
+        /**
+         * @return The number of executions
+         */
+        public int getExecutions() {
+            return this.executions;
+        }
+
+        /**
+         * @return The number of rows read from all the executions
+         */
+        public long getRows() {
+            return this.rows;
+        }
+
+        /**
+         * @return The time spent from the execution to the close of the ResultSet, in nanoseconds
+         */
+        public long getNanos() {
+            return this.nanos;
+        }
+
+        /**
+         * @return The lines of the output of EXPLAIN QUERY PLAN, empty until explainPlan() is called
+         */
+        public List<String> getPlan() {
+            return this.plan;
+        }
+
+        /**
+         * Ask SQLite the plan of the SQL with the parameters of its last execution.
+         * The plan is read on a statement of its own, which does not belong to the StatementCache
+         * @param connection The connection of the StatementCache
+         * @author Dray Raphael
+         * @see PreparedStatement
+         */
+        public void explainPlan(final Connection connection) {
+            List<String> plan = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + this.sql)) {
+                for (int i = 0; i < this.parameters.length; ++i)
+                    statement.setObject(i + 1, this.parameters[i]);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next())
+                        plan.add(rs.getString("detail"));
+                }
+            } catch (SQLException e) {
+                plan.add("EXPLAIN QUERY PLAN failed: " + e.getMessage());
+            }
+            this.plan = plan;
+        }
+    }
+
+    /**
+     * Return the executions recorded since the last call, and start recording again
+     * @return The executions, by SQL in the order of their first execution
+     * @author Dray Raphael
+     */
+    public List<Execution> drain() {
+        List<Execution> drained = new ArrayList<>(this.executions.values());
+        this.executions = new LinkedHashMap<>();
+        return drained;
+    }
+
+    /**
+     * Wrap a statement of the StatementCache to record its executions
+     * @param sql The parameterized SQL of the statement
+     * @param statement The statement
+     * @return The statement recording its executions in this trace
+     * @author Dray Raphael
+     * @see Proxy
+     */
+    PreparedStatement wrap(final String sql, final PreparedStatement statement) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                                                          new Class<?>[] { PreparedStatement.class },
+                                                          new StatementHandler(sql, statement));
+    }
+
+    private Execution execution(final String sql) {
+        return this.executions.computeIfAbsent(sql, Execution::new);
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Recording of the parameters and of the executions of a statement
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final String sql;
+        private final PreparedStatement statement;
+        private Object[] parameters = new Object[0];
+
+        private StatementHandler(final String sql, final PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+                int index = (Integer) args[0];
+                if (index > this.parameters.length) this.parameters = Arrays.copyOf(this.parameters, index);
+                this.parameters[index - 1] = args[1];
+            } else if (name.equals("clearParameters")) {
+                this.parameters = new Object[0];
+            } else if (name.equals("executeQuery") && args == null) {
+                Execution execution = execution(this.sql);
+                execution.parameters = this.parameters.clone();
+                long start = System.nanoTime();
+                ResultSet resultSet = (ResultSet) StatementTrace.invoke(this.statement, method, null);
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                                              new ResultSetHandler(execution, resultSet, start));
+            }
+            return StatementTrace.invoke(this.statement, method, args);
+        }
+    }
+
+    /**
+     * Counting of the rows read from a ResultSet and of the time spent until it is closed
+     */
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final Execution execution;
+        private final ResultSet resultSet;
+        private final long start;
+        private boolean closed;
+
+        private ResultSetHandler(final Execution execution, final ResultSet resultSet, final long start) {
+            this.execution = execution;
+            this.resultSet = resultSet;
+            this.start = start;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            Object result = StatementTrace.invoke(this.resultSet, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                this.execution.rows++;
+            } else if (method.getName().equals("close") && !this.closed) {
+                this.closed = true;
+                this.execution.executions++;
+                this.execution.nanos += System.nanoTime() - this.start;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Statistics of the cardinality of the films, used to evaluate the most selective groups of a query first.
+ * <p>
+ * The number of films of a person, of a country or of an interval of years is known exactly by the
+ * NameIndex, the CountryDictionary and the YearIndex. This class adds the number of films of the catalogue
+ * and the document frequency of each word of the titles and of the other titles, the words being cut
+ * in the same way from the value of TITRE and lowered like LIKE lowers them, the ASCII letters only:
+ * the number of films of a request TITRE is estimated by its rarest word, each word being a prefix. The words are also found in the middle of a word
+ * by the LIKE of TITRE, so this is an estimate; a value with no word found is estimated as the whole catalogue.
+ * The statistics are immutable, so they can be shared between threads.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see Catalogue#lowerAscii(String)
+ * @see NameIndex
+ * @see YearIndex
+ */
+public final class Statistics {
+    private static final String SQL_FILMS = "SELECT count(*) FROM films";
+    private static final String SQL_TITRES = "SELECT id_film, titre FROM films " +
+                                             "UNION ALL " +
+                                             "SELECT id_film, titre FROM autres_titres " +
+                                             "ORDER BY 1";
+
+    private final int films;
+    private final String[] mots;
+    private final long[] frequences;
+    private final long generation;
+
+    /**
+     * Constructor of the statistics given in parameter
+     *
+     * @author  Dray Raphael
+     * @param films The number of films of the catalogue
+     * @param mots The words of the titles, sorted
+     * @param frequences The number of films of each word
+     * @param generation The generation of the Database file the statistics were read from
+     * @see DatabaseWatcher
+     */
+    public Statistics(final int films, final String[] mots, final int[] frequences, final long generation) {
+        this.films = films;
+        this.mots = mots;
+        this.generation = generation;
+        // Cumulated, so that the films of all the words of a prefix are a difference
+        this.frequences = new long[frequences.length + 1];
+        for (int i = 0; i < frequences.length; ++i) this.frequences[i + 1] = this.frequences[i] + frequences[i];
+    }
+
+    /**
+     * Read the titles of all the films of the Database and count the films of each of their words.
+     *
+     * @author  Dray Raphael
+     * @param connection The connection to the Database
+     * @param generation The generation of the Database file
+     * @return The statistics
+     * @throws SQLException If the films cannot be read
+     * @see DatabaseWatcher
+     */
+    public static Statistics load(final Connection connection, final long generation) throws SQLException {
+        int films = 0;
+        HashMap<String, int[]> mots = new HashMap<>();
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(SQL_FILMS)) {
+                if (rs.next()) films = rs.getInt(1);
+            }
+            try (ResultSet rs = statement.executeQuery(SQL_TITRES)) {
+                while (rs.next()) {
+                    String titre = rs.getString(2);
+                    if (titre == null) continue;
+                    int id = rs.getInt(1);
+                    // {number of films, last film counted}, the titles of a film being read together
+                    for (String mot : words(titre)) {
+                        int[] frequence = mots.computeIfAbsent(mot, k -> new int[] {0, Integer.MIN_VALUE});
+                        if (frequence[1] == id) continue;
+                        frequence[0]++;
+                        frequence[1] = id;
+                    }
+                }
+            }
+        }
+
+        String[] sorted = mots.keySet().toArray(new String[0]);
+        Arrays.sort(sorted);
+        int[] frequences = new int[sorted.length];
+        for (int i = 0; i < sorted.length; ++i) frequences[i] = mots.get(sorted[i])[0];
+        return new Statistics(films, sorted, frequences, generation);
+    }
+
+    /**
+     * @return The generation of the Database file the statistics were read from
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * @return The number of films of the catalogue
+     */
+    public int getFilms() {
+        return this.films;
+    }
+
+    /**
+     * @return The number of distinct words of the titles
+     */
+    public int size() {
+        return this.mots.length;
+    }
+
+    /**
+     * Estimate the number of films of a request TITRE: the number of films of its rarest word,
+     * counting for a word all the words it is a prefix of
+     *
+     * @author  Dray Raphael
+     * @param value The value of the request
+     * @return The estimated number of films, at most the number of films of the catalogue
+     */
+    public long titre(final String value) {
+        long estimate = this.films;
+        boolean found = false;
+        for (String mot : words(value)) {
+            int from = lowerBound(mot), to = lowerBound(mot + Character.MAX_VALUE);
+            estimate = Math.min(estimate, this.frequences[to] - this.frequences[from]);
+            found = true;
+        }
+        // Without any word, or without any word found at the start of a word, nothing is known of the films of LIKE
+        return found && estimate > 0 ? estimate : this.films;
+    }
+
+    /**
+     * @param mot A word
+     * @return The position of the first word which is not before mot
+     */
+    private int lowerBound(final String mot) {
+        int position = Arrays.binarySearch(this.mots, mot);
+        return position < 0 ? -position - 1 : position;
+    }
+
+    /**
+     * Cut a title in words: the letters and the digits, the ASCII letters in lower case like LIKE compares them
+     * @param titre A title
+     * @return The words of the title
+     */
+    private static List<String> words(final String titre) {
+        List<String> words = new ArrayList<>();
+        StringBuilder mot = new StringBuilder();
+        String lower = Catalogue.lowerAscii(titre);
+        for (int i = 0; i <= lower.length(); ++i) {
+            if (i < lower.length() && Character.isLetterOrDigit(lower.charAt(i))) {
+                mot.append(lower.charAt(i));
+            } else if (mot.length() > 0) {
+                words.add(mot.toString());
+                mot.setLength(0);
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,41 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors running each task on a virtual thread when the JVM has them (Java 21),
+ * and on a bounded pool of daemon threads otherwise.
+ * The virtual threads are looked up by reflection so that the sources still build for Java 17.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see ParallelSearch
+ * @see SearchServer
+ */
+public final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * Create an executor running a virtual thread per task, or a pool of daemon threads
+     * @param name The prefix of the names of the threads of the pool
+     * @param threads The number of threads of the pool, when the virtual threads are not available
+     * @return The executor
+     * @author Dray Raphael
+     * @see Executors
+     */
+    public static ExecutorService newExecutor(final String name, final int threads) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            final AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
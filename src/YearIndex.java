@@ -0,0 +1,158 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * In-memory index of the years of the films, answering the keywords EN, AVANT and APRES without SQL.
+ * <p>
+ * The id_film are sorted by year, then by id, and the position of the first film of each year is kept,
+ * so that the films of any interval of years are a contiguous slice of the permutation,
+ * and the number of films of an interval is a difference of two offsets.
+ * The year of each film is also kept by id, so that a few candidates are filtered without building the slice.
+ * The films without a year are left out, like annee = ? leaves them out.
+ * The index is immutable, so it can be shared between threads.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see Query#foldYears()
+ * @see Catalogue#annees(int, int)
+ */
+public final class YearIndex {
+    private static final String SQL_ANNEES = "SELECT annee, id_film FROM films WHERE annee IS NOT NULL ORDER BY annee, id_film";
+
+    private final int anneeMin;
+    private final int[] start;
+    private final int[] films;
+    private final int[] filmsById;
+    private final int[] anneeById;
+    private final long generation;
+
+    /**
+     * Constructor of the index of the films given in parameter
+     *
+     * @author  Dray Raphael
+     * @param anneeMin The first year of the index
+     * @param start The position in films of the first film of each year from anneeMin, followed by the number of films
+     * @param films The id_film sorted by year, then by id
+     * @param generation The generation of the Database file the films were read from
+     * @see DatabaseWatcher
+     */
+    public YearIndex(final int anneeMin, final int[] start, final int[] films, final long generation) {
+        this.anneeMin = anneeMin;
+        this.start = start;
+        this.films = films;
+        this.generation = generation;
+
+        // The films sorted by id, with their year in the low bits
+        long[] byId = new long[films.length];
+        for (int y = 0; y + 1 < start.length; ++y)
+            for (int i = start[y]; i < start[y + 1]; ++i) byId[i] = ((long) films[i] << 32) | y;
+        Arrays.sort(byId);
+        this.filmsById = new int[byId.length];
+        this.anneeById = new int[byId.length];
+        for (int i = 0; i < byId.length; ++i) {
+            this.filmsById[i] = (int) (byId[i] >> 32);
+            this.anneeById[i] = anneeMin + (int) byId[i];
+        }
+    }
+
+    /**
+     * Read the year of all the films of the Database and index them.
+     *
+     * @author  Dray Raphael
+     * @param connection The connection to the Database
+     * @param generation The generation of the Database file
+     * @return The index of the years
+     * @throws SQLException If the films cannot be read
+     * @see DatabaseWatcher
+     */
+    public static YearIndex load(final Connection connection, final long generation) throws SQLException {
+        ArrayList<Integer> annees = new ArrayList<>(), films = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SQL_ANNEES)) {
+            while (rs.next()) {
+                annees.add(rs.getInt(1));
+                films.add(rs.getInt(2));
+            }
+        }
+
+        int n = films.size();
+        if (n == 0) return new YearIndex(0, new int[] {0}, new int[0], generation);
+
+        int anneeMin = annees.get(0), anneeMax = annees.get(n - 1);
+        int[] start = new int[anneeMax - anneeMin + 2];
+        for (int i = 0; i < n; ++i) ++start[annees.get(i) - anneeMin + 1];
+        for (int y = 1; y < start.length; ++y) start[y] += start[y - 1];
+        int[] ids = new int[n];
+        for (int i = 0; i < n; ++i) ids[i] = films.get(i);
+        return new YearIndex(anneeMin, start, ids, generation);
+    }
+
+    /**
+     * @return The generation of the Database file the index was built from
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Return the films released during the years between min and max, inclusive
+     *
+     * @author  Dray Raphael
+     * @param min The first year
+     * @param max The last year
+     * @return The PostingList of all the idx found, empty if min is after max
+     */
+    public PostingList range(final int min, final int max) {
+        int from = offset(min), to = offset((long) max + 1);
+        if (from >= to) return PostingList.EMPTY;
+
+        int[] ids = new int[to - from];
+        System.arraycopy(this.films, from, ids, 0, ids.length);
+        return PostingList.of(ids, ids.length);
+    }
+
+    /**
+     * Return the candidates released during the years between min and max, inclusive:
+     * the same films as range(min, max).intersect(candidates), for a cost that depends on the candidates only
+     *
+     * @author  Dray Raphael
+     * @param candidates The films to filter
+     * @param min The first year
+     * @param max The last year
+     * @return The PostingList of the candidates found
+     */
+    public PostingList filter(final PostingList candidates, final int min, final int max) {
+        PostingList.Builder result = new PostingList.Builder();
+        for (int i = 0; i < candidates.size(); ++i) {
+            int position = Arrays.binarySearch(this.filmsById, candidates.get(i));
+            if (position >= 0 && this.anneeById[position] >= min && this.anneeById[position] <= max)
+                result.add(candidates.get(i));
+        }
+        return result.build();
+    }
+
+    /**
+     * Return the number of films released during the years between min and max, inclusive, without building them
+     *
+     * @author  Dray Raphael
+     * @param min The first year
+     * @param max The last year
+     * @return The number of films, 0 if min is after max
+     */
+    public int count(final int min, final int max) {
+        return Math.max(0, offset((long) max + 1) - offset(min));
+    }
+
+    /**
+     * @param year A year
+     * @return The position of the first film released during the year or after it
+     */
+    private int offset(final long year) {
+        int years = this.start.length - 1;
+        return this.start[(int) Math.max(0, Math.min(years, year - this.anneeMin))];
+    }
+}
@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests of the resolution of the values of PAYS by the CountryDictionary: the end of the code for a value
+ * of at most two characters, the end of the name or of its alias otherwise, "Cook, Îles" being also "Îles Cook".
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see CountryDictionary
+ */
+class CountryDictionaryTest {
+    private final CountryDictionary countries = new CountryDictionary(
+            new String[] {"ck", "fr", "gb", "gn", "pg", "us"},
+            new String[] {"Cook, Îles", "France", "Royaume-Uni", "Guinée", "Papouasie-Nouvelle-Guinée", "États-Unis"},
+            new PostingList[] {PostingList.of(new int[] {7}, 1), PostingList.of(new int[] {1, 4}, 2),
+                               PostingList.of(new int[] {2, 4, 5}, 3), PostingList.EMPTY, PostingList.EMPTY,
+                               PostingList.of(new int[] {3, 5, 6}, 3)},
+            0);
+
+    @Test
+    void resolveTheEndOfTheName() {
+        assertArrayEquals(new String[] {"fr"}, this.countries.resolve("france"));
+        assertArrayEquals(new String[] {"fr"}, this.countries.resolve("ance"));
+        assertArrayEquals(new String[] {"us"}, this.countries.resolve("Etats Unis"));
+        assertArrayEquals(new String[] {"gb"}, this.countries.resolve("uni"));
+        assertArrayEquals(new String[] {"gn", "pg"}, this.countries.resolve("guinee"));
+    }
+
+    @Test
+    void resolveBothWritingsOfANameWithAComma() {
+        assertArrayEquals(new String[] {"ck"}, this.countries.resolve("Cook, Îles"));
+        assertArrayEquals(new String[] {"ck"}, this.countries.resolve("Îles Cook"));
+        assertArrayEquals(new String[] {"ck"}, this.countries.resolve("iles"));
+        assertArrayEquals(new String[] {"ck"}, this.countries.resolve("cook"));
+    }
+
+    @Test
+    void resolveTheEndOfTheCode() {
+        assertArrayEquals(new String[] {"us"}, this.countries.resolve("US"));
+        assertArrayEquals(new String[] {"ck"}, this.countries.resolve("k"));
+        assertArrayEquals(new String[0], this.countries.resolve("de"));
+        assertArrayEquals(new String[0], this.countries.resolve("..."));
+    }
+
+    @Test
+    void filmsOfTheCountries() {
+        assertArrayEquals(new int[] {2, 3, 4, 5, 6}, this.countries.films(new String[] {"gb", "US"}).toArray());
+        assertEquals(6, this.countries.count(new String[] {"gb", "us"}));
+        assertEquals("Cook, Îles", this.countries.nom("CK"));
+        assertNull(this.countries.nom("zz"));
+    }
+}
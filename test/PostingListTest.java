@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the PostingList: the intersections by linear merge and by galloping must give the same ids,
+ * on both sides of the ratio of sizes where the intersection switches from one to the other.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see PostingList
+ */
+class PostingListTest {
+    private static PostingList list(final int... ids) {
+        return PostingList.of(ids.clone(), ids.length);
+    }
+
+    private static PostingList range(final int from, final int to, final int step) {
+        int[] ids = IntStream.iterate(from, id -> id < to, id -> id + step).toArray();
+        return PostingList.of(ids, ids.length);
+    }
+
+    private static int[] intersection(final PostingList a, final PostingList b) {
+        int[] other = b.toArray();
+        return Arrays.stream(a.toArray()).filter(id -> Arrays.binarySearch(other, id) >= 0).toArray();
+    }
+
+    @Test
+    void ofSortsAndRemovesTheRepeatedIds() {
+        assertArrayEquals(new int[] {1, 3, 7}, list(7, 3, 1, 3, 7).toArray());
+        assertSame(PostingList.EMPTY, list());
+    }
+
+    @Test
+    void intersectByLinearMerge() {
+        PostingList a = list(1, 2, 4, 8, 16), b = list(2, 3, 4, 5, 16, 17);
+        assertArrayEquals(new int[] {2, 4, 16}, a.intersect(b).toArray());
+        assertArrayEquals(new int[] {2, 4, 16}, b.intersect(a).toArray());
+    }
+
+    @Test
+    void intersectByGalloping() {
+        PostingList small = list(0, 333, 334, 999, 1000), big = range(0, 1000, 1);
+        assertArrayEquals(new int[] {0, 333, 334, 999}, small.intersect(big).toArray());
+        assertArrayEquals(new int[] {0, 333, 334, 999}, big.intersect(small).toArray());
+    }
+
+    @Test
+    void intersectOnBothSidesOfTheGallopRatio() {
+        PostingList small = list(-1, 5, 64, 127, 128);
+        for (int size = 5 * 32 - 2; size <= 5 * 32 + 2; ++size) {
+            PostingList big = range(0, size, 1);
+            assertArrayEquals(intersection(small, big), small.intersect(big).toArray(), "size " + size);
+            assertArrayEquals(intersection(small, big), big.intersect(small).toArray(), "size " + size);
+        }
+    }
+
+    @Test
+    void intersectWithAnEmptyList() {
+        assertSame(PostingList.EMPTY, range(0, 100, 1).intersect(PostingList.EMPTY));
+        assertSame(PostingList.EMPTY, PostingList.EMPTY.intersect(range(0, 100, 1)));
+        assertSame(PostingList.EMPTY, list(1, 3).intersect(list(2, 4)));
+    }
+
+    @Test
+    void union() {
+        PostingList a = list(1, 4, 9), b = list(2, 4, 10, 11);
+        assertArrayEquals(new int[] {1, 2, 4, 9, 10, 11}, a.union(b).toArray());
+        assertArrayEquals(new int[] {1, 2, 4, 9, 10, 11}, b.union(a).toArray());
+        assertSame(a, a.union(PostingList.EMPTY));
+        assertSame(a, PostingList.EMPTY.union(a));
+    }
+
+    @Test
+    void intersectAll() {
+        PostingList evens = range(0, 1000, 2), threes = range(0, 1000, 3), sevens = range(0, 1000, 7);
+        assertArrayEquals(range(0, 1000, 42).toArray(), PostingList.intersectAll(List.of(evens, threes, sevens)).toArray());
+        assertTrue(PostingList.intersectAll(List.of(evens, PostingList.EMPTY, threes)).isEmpty());
+        assertSame(PostingList.EMPTY, PostingList.intersectAll(List.of()));
+    }
+}
@@ -0,0 +1,41 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests of the canonical keys of the QueryCache: two queries with the same results must share their key,
+ * whatever the order of their groups and of the requests of a group.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see QueryCache#canonicalKey(Query)
+ */
+class QueryCacheTest {
+    private static String key(final String query) {
+        Query parsed = new Analyzer(query).getQuery();
+        assertNull(parsed.getError(), query);
+        return QueryCache.canonicalKey(parsed);
+    }
+
+    @Test
+    void reorderedGroupsShareTheirKey() {
+        String key = key("DE Hitchcock, TITRE vertigo OU TITRE sueurs, APRES 1950");
+        assertEquals(key, key("APRES 1950, TITRE vertigo OU TITRE sueurs, DE Hitchcock"));
+        assertEquals(key, key("TITRE sueurs OU TITRE vertigo, APRES 1950, DE Hitchcock"));
+    }
+
+    @Test
+    void foldedValuesShareTheirKey() {
+        assertEquals(key("DE Hitchcock, TITRE Vertigo"), key("TITRE vertigo, DE hitchcock"));
+        assertEquals(key("AVEC Cary Grant"), key("AVEC cary GRANT"));
+    }
+
+    @Test
+    void differentQueriesHaveDifferentKeys() {
+        assertNotEquals(key("DE Hitchcock, TITRE vertigo"), key("DE Hitchcock OU TITRE vertigo"));
+        assertNotEquals(key("AVANT 1960"), key("APRES 1960"));
+        assertNotEquals(key("TITRE vertigo"), key("DE vertigo"));
+    }
+}
@@ -0,0 +1,73 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the folding of the years of a Query: the groups holding a single request EN, AVANT or APRES
+ * become one request EN over the intersection of their intervals, which may be empty.
+ *
+ * @author  Dray Raphael
+ * @version 1.0
+ * @see Query#foldYears()
+ * @see Query#isUnsatisfiable()
+ */
+class QueryTest {
+    private static Query parse(final String query) {
+        Query parsed = new Analyzer(query).getQuery();
+        assertNull(parsed.getError(), query);
+        return parsed;
+    }
+
+    @Test
+    void foldTheYearsInPlaceOfTheFirstOne() {
+        Query query = parse("DE Hitchcock, APRES 1950, TITRE vertigo, AVANT 1960").foldYears();
+        List<List<Request>> groups = query.getGroups();
+        assertEquals(3, groups.size());
+        assertEquals(KeyWord.REALISATEUR, groups.get(0).get(0).getKeyWord());
+        assertEquals(KeyWord.TITRE, groups.get(2).get(0).getKeyWord());
+
+        Request years = groups.get(1).get(0);
+        assertEquals(1, groups.get(1).size());
+        assertEquals(1951, years.getMinYear());
+        assertEquals(1959, years.getMaxYear());
+        assertFalse(query.isUnsatisfiable());
+    }
+
+    @Test
+    void keepTheQueriesWithLessThanTwoYears() {
+        Query query = parse("DE Hitchcock, AVANT 1960");
+        assertSame(query, query.foldYears());
+    }
+
+    @Test
+    void keepTheGroupsOfSeveralRequests() {
+        Query query = parse("EN 1955 OU EN 1958, AVANT 1957, APRES 1954").foldYears();
+        assertEquals(2, query.getGroups().size());
+        assertEquals(2, query.getGroups().get(0).size());
+        assertEquals(1955, query.getGroups().get(1).get(0).getMinYear());
+        assertEquals(1956, query.getGroups().get(1).get(0).getMaxYear());
+    }
+
+    @Test
+    void disjointYearsAreUnsatisfiable() {
+        Query query = parse("EN 1980, AVANT 1970");
+        assertFalse(query.isUnsatisfiable());
+
+        Query folded = query.foldYears();
+        assertEquals(1, folded.getGroups().size());
+        assertTrue(folded.getGroups().get(0).get(0).isEmptyInterval());
+        assertTrue(folded.isUnsatisfiable());
+    }
+
+    @Test
+    void aGroupIsUnsatisfiableOnlyIfAllItsRequestsAre() {
+        assertFalse(parse("EN 1980 OU DE Hitchcock, AVANT 1970").foldYears().isUnsatisfiable());
+        assertTrue(parse("DE Hitchcock, APRES 1990, AVANT 1980").foldYears().isUnsatisfiable());
+    }
+}